@@ -0,0 +1,105 @@
+package minesweep;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code -rf csv} and prints the change of every benchmark, marking the
+ * ones that got slower by more than the threshold. Exits with status 1 if any did so it can fail a build.
+ * <p>
+ * Usage: {@code BenchmarkCompare <baseline.csv> <current.csv> [threshold percent, default 10]}
+ * @author Martin Wallace
+ */
+public class BenchmarkCompare {
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2){
+			System.err.println("Usage: BenchmarkCompare <baseline.csv> <current.csv> [threshold percent]");
+			System.exit(2);
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		Map<String, double[]> baseline = read(args[0]);
+		Map<String, double[]> current = read(args[1]);
+
+		int regressions = 0;
+		System.out.printf("%-60s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+		for(Map.Entry<String, double[]> entry : current.entrySet()) {
+			double[] before = baseline.get(entry.getKey());
+			double after = entry.getValue()[0];
+			if(before == null){
+				System.out.printf("%-60s %14s %14.3f %9s%n", entry.getKey(), "-", after, "new");
+				continue;
+			}
+			// all of the benchmarks report time per operation so bigger is slower
+			double change = (after - before[0]) / before[0] * 100;
+			boolean regression = change > threshold;
+			if(regression){
+				regressions++;
+			}
+			System.out.printf("%-60s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), before[0], after, change,
+					regression ? "  REGRESSION" : "");
+		}
+		if(regressions > 0){
+			System.out.printf("%d benchmark(s) slower by more than %.1f%%%n", regressions, threshold);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return the score and error of every benchmark in the file keyed by benchmark name and parameters
+	 */
+	private static Map<String, double[]> read(String path) throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+		List<String> header = split(lines.get(0));
+		int score = header.indexOf("Score");
+		int error = header.indexOf("Score Error (99.9%)");
+		Map<String, double[]> results = new LinkedHashMap<>();
+		for(String line : lines.subList(1, lines.size())) {
+			if(line.trim().isEmpty()){
+				continue;
+			}
+			List<String> fields = split(line);
+			StringBuilder key = new StringBuilder(fields.get(0));
+			for(int i = 0; i < header.size(); i++) {
+				if(header.get(i).startsWith("Param: ")){
+					key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+				}
+			}
+			results.put(key.toString(), new double[]{number(fields.get(score)), number(fields.get(error))});
+		}
+		return results;
+	}
+
+	private static double number(String field) {
+		// JMH writes numbers in the default locale so a comma may be the decimal separator
+		return field.isEmpty() || field.equals("NaN") ? Double.NaN : Double.parseDouble(field.replace(',', '.'));
+	}
+
+	/**
+	 * Splits a line of CSV with fields optionally wrapped in double quotes
+	 */
+	private static List<String> split(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for(int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(c == '"'){
+				quoted = !quoted;
+			}else if(c == ',' && !quoted){
+				fields.add(field.toString());
+				field.setLength(0);
+			}else{
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
@@ -0,0 +1,123 @@
+package minesweep;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks for building a board and keeping track of the game on it, at every difficulty plus a large
+ * custom board.
+ * @author Martin Wallace
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	@Param({"beginner", "intermediate", "expert", "large"})
+	public String size;
+
+	private int rows, cols, mines, first;
+	private long seed;
+	private Board board;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		int[] values = values(size);
+		rows = values[MineSweeper.ROW];
+		cols = values[MineSweeper.COL];
+		mines = values[MineSweeper.MINES];
+		first = (rows / 2) * cols + cols / 2;
+		board = new Board(rows, cols);
+		board.placeMines(mines, first, new SplittableRandom(42)::nextInt);
+		board.computeCounts();
+	}
+
+	/**
+	 * @return rows, cols and mines for one of the benchmarked board sizes
+	 */
+	static int[] values(String size) {
+		switch(size) {
+			case "beginner": return MineSweeper.VALUES[MineSweeper.BEGINNER];
+			case "intermediate": return MineSweeper.VALUES[MineSweeper.INTERMEDIATE];
+			case "expert": return MineSweeper.VALUES[MineSweeper.EXPERT];
+			case "large": return new int[]{1000, 1000, 100000};
+			default: throw new IllegalArgumentException("Unknown board size " + size);
+		}
+	}
+
+	/**
+	 * Mine placement done by generateMap
+	 */
+	@Benchmark
+	public Board placeMines() {
+		Board fresh = new Board(rows, cols);
+		fresh.placeMines(mines, first, new SplittableRandom(seed++)::nextInt);
+		return fresh;
+	}
+
+	/**
+	 * Counting done by setMap before the counts moved to the board
+	 */
+	@Benchmark
+	public Board computeCounts() {
+		board.computeCounts();
+		return board;
+	}
+
+	@Benchmark
+	public Board computeCountsScalar() {
+		board.computeCountsScalar();
+		return board;
+	}
+
+	/**
+	 * Neighbors are no longer stored per cell as they were by addNeighbors. This measures working out the
+	 * neighborhood of every cell instead, which is what replaced it
+	 */
+	@Benchmark
+	public void neighborhoods(Blackhole blackhole) {
+		for(int cell = 0; cell < board.size(); cell++) {
+			blackhole.consume(board.neighborhood(cell));
+		}
+	}
+
+	/**
+	 * The full scan the old update() made every tick to count flags, uncovered cells and exploded mines
+	 */
+	@Benchmark
+	public int statusScan() {
+		int flagCount = 0, uncoveredCount = 0, exploded = 0;
+		for(int cell = 0; cell < board.size(); cell++) {
+			int state = board.getState(cell);
+			if(state == Board.FLAGGED){ flagCount++; }
+			if(state == Board.REVEALED){ uncoveredCount++; }
+			if(state == Board.EXPLODED){ exploded++; }
+		}
+		return flagCount + uncoveredCount + exploded;
+	}
+
+	/**
+	 * What replaced the scan, the counts kept by the board as moves are made
+	 */
+	@Benchmark
+	public int statusIncremental() {
+		return board.getFlagCount() + board.getRevealedCount() + (board.isLost() ? 1 : 0) + (board.isWon() ? 1 : 0);
+	}
+}
@@ -0,0 +1,37 @@
+package minesweep;
+
+/**
+ * Measures how long a zero-cell cascade takes as the board grows from 8x8 to 2000x2000. Every board has a single
+ * mine in the bottom right corner so that one click in the top left corner reveals every other cell.
+ * @author Martin Wallace
+ */
+public class CascadeBenchmark {
+
+	private static final int[] SIZES = {8, 16, 32, 64, 128, 256, 512, 1000, 2000};
+	private static final int WARMUP = 5, ITERATIONS = 10;
+
+	public static void main(String[] args) {
+		System.out.printf("%10s %12s %12s %14s%n", "size", "cells", "ms/cascade", "ns/cell");
+		for(int size : SIZES) {
+			long best = Long.MAX_VALUE;
+			int revealed = 0;
+			for(int i = 0; i < WARMUP + ITERATIONS; i++) {
+				Board board = createBoard(size);
+				long start = System.nanoTime();
+				revealed = board.reveal(0).length;
+				long time = System.nanoTime() - start;
+				if(i >= WARMUP){
+					best = Math.min(best, time);
+				}
+			}
+			System.out.printf("%10s %12d %12.3f %14.2f%n", size + "x" + size, revealed, best / 1e6, (double) best / revealed);
+		}
+	}
+
+	private static Board createBoard(int size) {
+		Board board = new Board(size, size);
+		board.setMine(board.index(size - 1, size - 1));
+		board.computeCounts();
+		return board;
+	}
+}
@@ -0,0 +1,88 @@
+package minesweep;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Scrolls a viewport of an {@link EndlessBoard} ever further from the origin, reading every cell in view the way a
+ * repaint does and playing a few safe moves at each step. Reports the time per step and the chunks and heap in use
+ * as the distance grows, which should stay flat apart from the packed chunks left behind by the moves. Then scrolls
+ * back to check that every move survived its chunk being evicted, and that a board with the same seed has the same
+ * mines.
+ * <p>
+ * Usage: {@code EndlessBenchmark [steps] [moves per step]}
+ * @author Martin Wallace
+ */
+public class EndlessBenchmark {
+
+	private static final int VIEW_ROWS = 24, VIEW_COLS = 40, STEP = 8;
+	private static final long SEED = 42;
+
+	public static void main(String[] args) {
+		int steps = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int moves = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		EndlessBoard board = new EndlessBoard(SEED, 0.18, 256);
+		board.reveal(0, 0);
+		SplittableRandom random = new SplittableRandom(SEED);
+		Map<Long, Integer> played = new HashMap<>(); // last state seen for every cell a move was made on
+
+		System.out.printf("%12s %10s %10s %12s %12s %10s%n", "cells away", "us/step", "loaded", "saved", "generated", "heap MB");
+		long start = System.nanoTime();
+		for(int step = 1; step <= steps; step++) {
+			int top = step * STEP / 2, left = step * STEP; // heads down and to the right
+			for(int i = 0; i < VIEW_ROWS; i++) {
+				for(int j = 0; j < VIEW_COLS; j++) {
+					board.getState(top + i, left + j);
+				}
+			}
+			for(int m = 0; m < moves; m++) {
+				int row = top + random.nextInt(VIEW_ROWS), col = left + random.nextInt(VIEW_COLS);
+				if(board.isMine(row, col)){
+					board.toggleFlag(row, col);
+				}else{
+					board.reveal(row, col);
+				}
+				played.put(EndlessBoard.cell(row, col), board.getState(row, col));
+			}
+			if(Integer.bitCount(step) == 1 || step == steps){
+				long time = System.nanoTime() - start;
+				System.gc();
+				Runtime runtime = Runtime.getRuntime();
+				System.out.printf("%12d %10.2f %10d %12d %12d %10.1f%n", (long) step * STEP, time / 1e3 / step,
+						board.getLoadedChunks(), board.getSavedChunks(), board.getGenerated(),
+						(runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+			}
+		}
+
+		for(Map.Entry<Long, Integer> move : played.entrySet()) {
+			int row = EndlessBoard.row(move.getKey()), col = EndlessBoard.col(move.getKey());
+			if(board.getState(row, col) != move.getValue()){
+				throw new AssertionError("Cell " + row + " " + col + " lost its state after being evicted");
+			}
+		}
+		EndlessBoard fresh = new EndlessBoard(SEED, 0.18, 16);
+		for(long cell : played.keySet()) {
+			int row = EndlessBoard.row(cell), col = EndlessBoard.col(cell);
+			if(fresh.isMine(row, col) != board.isMine(row, col) || fresh.getCount(row, col) != board.getCount(row, col)){
+				throw new AssertionError("Cell " + row + " " + col + " differs on a board with the same seed");
+			}
+		}
+		System.out.printf("%d cells checked after eviction, %d cells revealed%n", played.size(), board.getRevealedCount());
+
+		// a chunk worked in between the loads of many others must stay in memory however long that goes on
+		EndlessBoard working = new EndlessBoard(SEED, 0.18, 16);
+		working.getState(0, 0);
+		long generated = working.getGenerated();
+		for(int i = 1; i <= 1000; i++) {
+			working.getState(i * EndlessBoard.CHUNK, 0);
+			for(int j = 0; j < 10; j++) {
+				working.getState(j, 0);
+			}
+		}
+		if(working.getGenerated() != generated + 1000){
+			throw new AssertionError("The chunk being worked in was evicted " + (working.getGenerated() - generated - 1000)
+					+ " times");
+		}
+	}
+}
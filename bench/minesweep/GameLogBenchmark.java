@@ -0,0 +1,87 @@
+package minesweep;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Logs millions of made up games to a {@link GameLog} and reads them back. Reports the time the thread adding the
+ * games spent per game, which is all a front end waits for, the size of the file per game, and the time to scan one
+ * column against scanning every column, which is what reading whole rows would cost. The totals read back are checked
+ * against the ones logged.
+ * <p>
+ * Usage: {@code GameLogBenchmark [games]}
+ * @author Martin Wallace
+ */
+public class GameLogBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+		Path file = Files.createTempFile("minesweep", ".log");
+		Files.delete(file); // the log writes its magic into a new file
+		try {
+			SplittableRandom random = new SplittableRandom(42);
+			long[] totals = new long[GameLog.COLUMNS.length];
+			long added = 0, start = System.nanoTime();
+			try(GameLog log = new GameLog(file)) {
+				for(int i = 0; i < games; i++) {
+					GameLog.Game game = game(random);
+					long before = System.nanoTime();
+					log.add(game);
+					added += System.nanoTime() - before;
+					totals[GameLog.MILLIS] += game.millis;
+					totals[GameLog.CLICKS] += game.clicks;
+					totals[GameLog.REVEALED] += game.revealed;
+				}
+			}
+			long written = System.nanoTime() - start;
+			System.out.printf("%d games logged in %.0f ms, %.0f ns a game on the adding thread, %.1f bytes a game%n",
+					games, written / 1e6, (double) added / games, (double) Files.size(file) / games);
+
+			try(GameLog.Reader reader = new GameLog.Reader(file)) {
+				if(reader.count() != games){
+					throw new AssertionError("Read " + reader.count() + " games back");
+				}
+				System.out.printf("%-22s %10s %14s%n", "scan", "ms", "games/s");
+				for(int round = 0; round < 3; round++) {
+					long[] sum = new long[1];
+					start = System.nanoTime();
+					reader.scan(GameLog.MILLIS, value -> sum[0] += value);
+					long one = System.nanoTime() - start;
+					if(sum[0] != totals[GameLog.MILLIS]){
+						throw new AssertionError("Millis read back total " + sum[0]);
+					}
+					start = System.nanoTime();
+					for(int column = 0; column < GameLog.COLUMNS.length; column++) {
+						sum[0] = 0;
+						reader.scan(column, value -> sum[0] += value);
+						if((column == GameLog.CLICKS || column == GameLog.REVEALED) && sum[0] != totals[column]){
+							throw new AssertionError(GameLog.COLUMNS[column] + " read back total " + sum[0]);
+						}
+					}
+					long all = System.nanoTime() - start;
+					System.out.printf("%-22s %10.1f %14.0f%n", "millis column", one / 1e6, games / (one / 1e9));
+					System.out.printf("%-22s %10.1f %14.0f%n", "every column", all / 1e6, games / (all / 1e9));
+				}
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * @return a game with statistics spread roughly the way real games are
+	 */
+	private static GameLog.Game game(SplittableRandom random) {
+		int[] values = MineSweeper.VALUES[random.nextInt(MineSweeper.VALUES.length)];
+		GameLog.Game game = new GameLog.Game(values, random.nextLong());
+		int safe = values[MineSweeper.ROW] * values[MineSweeper.COL] - values[MineSweeper.MINES];
+		int result = random.nextInt(10);
+		game.clicks = 1 + random.nextInt(safe / 2);
+		game.flags = random.nextInt(values[MineSweeper.MINES] + 1);
+		game.cascades = random.nextInt(1 + game.clicks / 4);
+		game.finish(result < 3 ? Replay.WON : result < 9 ? Replay.LOST : Replay.ABANDONED,
+				500 + random.nextInt(300_000), result < 3 ? safe : 1 + random.nextInt(safe));
+		return game;
+	}
+}
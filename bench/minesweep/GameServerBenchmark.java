@@ -0,0 +1,173 @@
+package minesweep;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Opens many sessions on an in-process {@link GameServer} and keeps every one of them busy with expert games,
+ * reporting requests per second and the latency of each request. Each client thread sends one request on every
+ * one of its sessions before reading the answers, so all sessions have a request in flight at once and the
+ * latencies include the time spent waiting for the other sessions of the same client thread.
+ * <p>
+ * Usage: {@code GameServerBenchmark [sessions] [rounds] [client threads]}. Each session takes two file
+ * descriptors, one on each side, so the open file limit must allow for twice the sessions.
+ * @author Martin Wallace
+ */
+public class GameServerBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+		try(GameServer server = new GameServer(0, false)) {
+			Thread acceptor = new Thread(() -> {
+				try {
+					server.serve();
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+			}, "acceptor");
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			List<Client> clients = new ArrayList<>();
+			long connectStart = System.nanoTime();
+			for(int i = 0; i < sessions; i++) {
+				clients.add(new Client(server.getPort(), i));
+			}
+			while(server.getOpenSessions() < sessions) {
+				Thread.sleep(1);
+			}
+			System.out.printf("%d sessions on %s threads connected in %.0f ms%n", sessions,
+					server.isVirtual() ? "virtual" : "platform", (System.nanoTime() - connectStart) / 1e6);
+
+			long[][] latencies = new long[threads][];
+			Thread[] drivers = new Thread[threads];
+			long start = System.nanoTime();
+			for(int t = 0; t < threads; t++) {
+				final int id = t;
+				List<Client> mine = new ArrayList<>();
+				for(int i = t; i < sessions; i += threads) {
+					mine.add(clients.get(i));
+				}
+				drivers[t] = new Thread(() -> latencies[id] = drive(mine, rounds), "driver-" + t);
+				drivers[t].start();
+			}
+			for(Thread driver : drivers) {
+				driver.join();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			int count = 0;
+			for(long[] l : latencies) {
+				count += l.length;
+			}
+			long[] all = new long[count];
+			int n = 0;
+			for(long[] l : latencies) {
+				System.arraycopy(l, 0, all, n, l.length);
+				n += l.length;
+			}
+			Arrays.sort(all);
+			System.out.printf("%d requests in %.2f s, %.0f requests/s%n", count, seconds, count / seconds);
+			System.out.printf("latency: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n", all[count / 2] / 1e6,
+					all[(int) (count * 0.99)] / 1e6, all[(int) (count * 0.999)] / 1e6, all[count - 1] / 1e6);
+			for(Client client : clients) {
+				client.close();
+			}
+		}
+	}
+
+	/**
+	 * Sends one request on every session, then reads every answer, for the given number of rounds
+	 * @return the latency of every request
+	 */
+	private static long[] drive(List<Client> clients, int rounds) {
+		long[] latencies = new long[clients.size() * rounds];
+		long[] sent = new long[clients.size()];
+		int n = 0;
+		try {
+			for(int round = 0; round < rounds; round++) {
+				for(int i = 0; i < clients.size(); i++) {
+					sent[i] = System.nanoTime();
+					clients.get(i).send();
+				}
+				for(int i = 0; i < clients.size(); i++) {
+					clients.get(i).receive();
+					latencies[n++] = System.nanoTime() - sent[i];
+				}
+			}
+		} catch(IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return latencies;
+	}
+
+	/**
+	 * One session playing expert games by revealing random covered cells, starting a new game when one ends
+	 */
+	private static class Client {
+
+		private final Socket socket;
+		private final BufferedReader in;
+		private final Writer out;
+		private final SplittableRandom random;
+		private byte[] covered; // 1 for every cell the client has not seen revealed
+		private int cols;
+		private boolean newGame = true;
+
+		Client(int port, long seed) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setTcpNoDelay(true);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+			random = new SplittableRandom(seed);
+		}
+
+		void send() throws IOException {
+			if(newGame){
+				out.write("NEW expert " + random.nextLong() + "\n");
+			}else{
+				int cell;
+				do {
+					cell = random.nextInt(covered.length);
+				} while(covered[cell] == 0);
+				out.write("REVEAL " + cell / cols + " " + cell % cols + "\n");
+			}
+			out.flush();
+		}
+
+		void receive() throws IOException {
+			String line = in.readLine();
+			if(line == null || line.startsWith("ERR")){
+				throw new IOException("Bad response " + line);
+			}
+			String[] parts = line.split(" ");
+			if(newGame){
+				cols = Integer.parseInt(parts[2]);
+				covered = new byte[Integer.parseInt(parts[1]) * cols];
+				Arrays.fill(covered, (byte) 1);
+				newGame = false;
+				return;
+			}
+			for(int i = 2; i < parts.length; i++) {
+				covered[Integer.parseInt(parts[i].substring(0, parts[i].indexOf('=')))] = 0;
+			}
+			newGame = !parts[1].equals("PLAYING");
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package minesweep;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for reading and writing the high score file. Uses a temporary file, and the lock file next to it,
+ * so the real scores are never touched.
+ * @author Martin Wallace
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HighScoreBenchmark {
+
+	private File file;
+	private HighScoreIO scores;
+
+	/**
+	 * Starts every iteration from an empty file, so later iterations do not measure a file grown by earlier ones
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() throws IOException {
+		file = File.createTempFile("highscores", ".txt");
+		scores = new HighScoreIO(file.getPath());
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		scores.close();
+		delete(new File(file.getPath() + ".lock"));
+		delete(file);
+	}
+
+	private static void delete(File file) {
+		if(file.exists() && !file.delete()){
+			file.deleteOnExit();
+		}
+	}
+
+	@Benchmark
+	public HighScoreIO read() {
+		return new HighScoreIO(file.getPath());
+	}
+
+	@Benchmark
+	public HighScoreIO addScore() {
+		scores.addScore(MineSweeper.BEGINNER, 1, "benchmark");
+		return scores;
+	}
+}
@@ -0,0 +1,96 @@
+package minesweep;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stress test for sharing the high score file between games. Starts several writer processes that each add runs to
+ * the same temporary file at the same time, then reads the file back and checks that every run was kept exactly once.
+ * <p>
+ * Usage: {@code HighScoreStress [writers] [runs per writer]}
+ * @author Martin Wallace
+ */
+public class HighScoreStress {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length > 0 && args[0].equals("--writer")){
+			write(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+			return;
+		}
+		checkFailedAppend();
+		int writers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		File file = File.createTempFile("highscores", ".txt");
+		if(!file.delete()){
+			throw new IOException("Unable to prepare " + file);
+		}
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		long start = System.nanoTime();
+		List<Process> processes = new ArrayList<>();
+		for(int w = 0; w < writers; w++) {
+			processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					HighScoreStress.class.getName(), "--writer", file.getPath(), String.valueOf(w), String.valueOf(runs))
+					.inheritIO().start());
+		}
+		for(Process process : processes) {
+			if(process.waitFor() != 0){
+				throw new IllegalStateException("Writer failed");
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		Leaderboard leaderboard = new HighScoreIO(file.getPath()).leaderboard(MineSweeper.VALUES[MineSweeper.EXPERT]);
+		Set<String> names = new HashSet<>();
+		for(int rank = 0; rank < leaderboard.size(); rank++) {
+			names.add(leaderboard.getName(rank));
+		}
+		System.out.printf("%d writers, %d runs each: %d runs kept, %d distinct, %.0f runs/s%n", writers, runs,
+				leaderboard.size(), names.size(), writers * runs / seconds);
+		new File(file.getPath() + ".lock").delete();
+		file.delete();
+		if(leaderboard.size() != writers * runs || names.size() != writers * runs){
+			throw new IllegalStateException("Runs were lost or duplicated");
+		}
+	}
+
+	/**
+	 * Checks that a run whose append fails is still listed, and only once
+	 */
+	private static void checkFailedAppend() throws IOException {
+		File file = File.createTempFile("highscores", ".txt");
+		if(!file.delete()){
+			throw new IOException("Unable to prepare " + file);
+		}
+		try(HighScoreIO scores = new HighScoreIO(file.getPath()) {
+			@Override
+			void append(Score score) throws IOException {
+				throw new IOException("disk full");
+			}
+		}) {
+			scores.addScore(MineSweeper.VALUES[MineSweeper.EXPERT], 100, "failed");
+			int listed = scores.leaderboard(MineSweeper.VALUES[MineSweeper.EXPERT]).size();
+			System.out.printf("run whose append failed listed %d time(s)%n", listed);
+			if(listed != 1){
+				throw new IllegalStateException("A run whose append failed is listed " + listed + " times");
+			}
+		} finally {
+			new File(file.getPath() + ".lock").delete();
+			file.delete();
+		}
+	}
+
+	/**
+	 * Adds runs named after the writer and the run number
+	 */
+	private static void write(String path, int writer, int runs) throws IOException {
+		try(HighScoreIO scores = new HighScoreIO(path)) {
+			for(int run = 0; run < runs; run++) {
+				scores.addScore(MineSweeper.VALUES[MineSweeper.EXPERT], 100 + run % 50, "writer" + writer + "-" + run);
+			}
+		}
+	}
+}
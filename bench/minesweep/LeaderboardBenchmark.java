@@ -0,0 +1,60 @@
+package minesweep;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for adding runs to and querying a leaderboard already holding many runs.
+ * @author Martin Wallace
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+	@Param({"1000", "100000", "500000"})
+	public int runs;
+
+	private Leaderboard leaderboard;
+	private SplittableRandom random;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		random = new SplittableRandom(42);
+		leaderboard = new Leaderboard();
+		for(int i = 0; i < runs; i++) {
+			leaderboard.add(random.nextInt(1000000), "benchmark");
+		}
+	}
+
+	@Benchmark
+	public int add() {
+		return leaderboard.add(random.nextInt(1000000), "benchmark");
+	}
+
+	@Benchmark
+	public int rank() {
+		return leaderboard.rank(random.nextInt(1000000));
+	}
+
+	@Benchmark
+	public int getTime() {
+		return leaderboard.getTime(random.nextInt(leaderboard.size()));
+	}
+}
@@ -0,0 +1,93 @@
+package minesweep;
+
+import java.util.SplittableRandom;
+
+/**
+ * Checks the bitboard neighbor counter against the cell by cell counter on boards of many shapes and densities,
+ * then times both of them as the board grows.
+ * @author Martin Wallace
+ */
+public class NeighborCountBenchmark {
+
+	private static final int[] SIZES = {8, 16, 32, 64, 128, 256, 512, 1000, 2000, 4000};
+	private static final int WARMUP = 5, ITERATIONS = 10;
+
+	public static void main(String[] args) {
+		validate();
+		System.out.printf("%10s %14s %14s %10s%n", "size", "scalar ms", "bitboard ms", "speedup");
+		for(int size : SIZES) {
+			Board board = createBoard(size, size, 0.2, new SplittableRandom(size));
+			long scalar = Long.MAX_VALUE, bitboard = Long.MAX_VALUE;
+			for(int i = 0; i < WARMUP + ITERATIONS; i++) {
+				long start = System.nanoTime();
+				board.computeCountsScalar();
+				long middle = System.nanoTime();
+				board.computeCounts();
+				long end = System.nanoTime();
+				if(i >= WARMUP){
+					scalar = Math.min(scalar, middle - start);
+					bitboard = Math.min(bitboard, end - middle);
+				}
+			}
+			System.out.printf("%10s %14.3f %14.3f %9.1fx%n", size + "x" + size, scalar / 1e6, bitboard / 1e6,
+					(double) scalar / bitboard);
+		}
+	}
+
+	/**
+	 * Compares the two counters cell for cell, including widths either side of a word boundary
+	 */
+	private static void validate() {
+		int[] widths = {1, 2, 3, 8, 32, 63, 64, 65, 127, 128, 129, 200, 1000};
+		double[] densities = {0, 0.05, 0.2, 0.5, 0.9, 1};
+		SplittableRandom random = new SplittableRandom(1);
+		int boards = 0;
+		for(int rows : new int[]{1, 2, 3, 16, 67}) {
+			for(int cols : widths) {
+				for(double density : densities) {
+					Board expected = createBoard(rows, cols, density, random);
+					Board actual = createBoard(rows, cols, 0, random);
+					for(int cell = 0; cell < expected.size(); cell++) {
+						if(expected.isMine(cell)){
+							actual.setMine(cell);
+						}
+					}
+					expected.computeCountsScalar();
+					actual.computeCounts();
+					for(int cell = 0; cell < expected.size(); cell++) {
+						if(expected.getCount(cell) != actual.getCount(cell)){
+							throw new AssertionError("Count mismatch on " + rows + "x" + cols + " board at cell " + cell);
+						}
+					}
+					boards++;
+				}
+			}
+		}
+		// large enough to be split across the fork-join pool
+		Board expected = createBoard(1500, 1500, 0.3, random);
+		Board actual = createBoard(1500, 1500, 0, random);
+		for(int cell = 0; cell < expected.size(); cell++) {
+			if(expected.isMine(cell)){
+				actual.setMine(cell);
+			}
+		}
+		expected.computeCountsScalar();
+		actual.computeCounts();
+		for(int cell = 0; cell < expected.size(); cell++) {
+			if(expected.getCount(cell) != actual.getCount(cell)){
+				throw new AssertionError("Count mismatch on parallel board at cell " + cell);
+			}
+		}
+		System.out.printf("Bitboard counts match cell for cell on %d boards%n", boards + 1);
+	}
+
+	private static Board createBoard(int rows, int cols, double density, SplittableRandom random) {
+		Board board = new Board(rows, cols);
+		for(int cell = 0; cell < board.size(); cell++) {
+			if(random.nextDouble() < density){
+				board.setMine(cell);
+			}
+		}
+		return board;
+	}
+}
@@ -0,0 +1,137 @@
+package minesweep;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Plays expert games guessing the covered cell least likely to be a mine and reports how long the probability
+ * engine takes after each move, along with how well its probabilities match where the mines really were. Every few
+ * moves the probabilities are also checked against a fresh engine that reuses nothing.
+ * @author Martin Wallace
+ */
+public class ProbabilityBenchmark {
+
+	private static final int WARMUP_GAMES = 200, GAMES = 1000, CHECK_EVERY = 7;
+	private static final int BUCKETS = 10;
+
+	public static void main(String[] args) {
+		int[] values = MineSweeper.VALUES[MineSweeper.EXPERT];
+		long[] latencies = new long[1 << 20];
+		long[] late = new long[1 << 20]; // moves made with less than a quarter of the safe cells left
+		int moves = 0, lateMoves = 0, wins = 0, approximated = 0;
+		long[] predicted = new long[BUCKETS], mines = new long[BUCKETS];
+		double[] predictedSum = new double[BUCKETS];
+		long recounted = 0;
+		for(int game = 0; game < WARMUP_GAMES + GAMES; game++) {
+			boolean measured = game >= WARMUP_GAMES;
+			SplittableRandom random = new SplittableRandom(game);
+			Board board = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+			ProbabilityEngine engine = new ProbabilityEngine(board);
+			int cell = board.index(board.getRows() / 2, board.getCols() / 2);
+			board.placeMines(values[MineSweeper.MINES], cell, new SplittableRandom(random.nextLong())::nextInt);
+			board.computeCounts();
+			int safeCells = board.size() - board.getMineCount();
+			for(int move = 0; ; move++) {
+				int[] changed = board.reveal(cell);
+				if(board.isLost() || board.isWon()){
+					break;
+				}
+				long start = System.nanoTime();
+				engine.cellsChanged(changed);
+				double[] probabilities = engine.getProbabilities();
+				long time = System.nanoTime() - start;
+				if(measured && moves < latencies.length){
+					latencies[moves++] = time;
+					if(board.getRevealedCount() * 4 > safeCells * 3){
+						late[lateMoves++] = time;
+					}
+					if(!engine.isExact()){
+						approximated++;
+					}
+				}
+				if(move % CHECK_EVERY == 0){
+					check(board, probabilities, engine.isExact());
+				}
+				cell = -1;
+				for(int c = 0; c < board.size(); c++) {
+					if(Double.isNaN(probabilities[c]) || board.getState(c) == Board.REVEALED){
+						continue;
+					}
+					if(measured){
+						int bucket = Math.min((int) (probabilities[c] * BUCKETS), BUCKETS - 1);
+						predicted[bucket]++;
+						predictedSum[bucket] += probabilities[c];
+						if(board.isMine(c)){
+							mines[bucket]++;
+						}
+					}
+					if(cell < 0 || probabilities[c] < probabilities[cell]){
+						cell = c;
+					}
+				}
+			}
+			if(measured){
+				recounted += engine.getRecounted();
+				if(board.isWon()){
+					wins++;
+				}
+			}
+		}
+		System.out.printf("%d expert games, %d moves, %.1f%% won, %.1f groups recounted per game, %d moves approximated%n",
+				GAMES, moves, 100.0 * wins / GAMES, (double) recounted / GAMES, approximated);
+		print("per move", latencies, moves);
+		print("late game", late, lateMoves);
+		System.out.println("predicted  actual  cells");
+		for(int b = 0; b < BUCKETS; b++) {
+			if(predicted[b] > 0){
+				System.out.printf("%8.3f  %6.3f  %d%n", predictedSum[b] / predicted[b], (double) mines[b] / predicted[b],
+						predicted[b]);
+			}
+		}
+	}
+
+	private static void print(String label, long[] latencies, int count) {
+		if(count == 0){
+			return;
+		}
+		Arrays.sort(latencies, 0, count);
+		long total = 0;
+		for(int i = 0; i < count; i++) {
+			total += latencies[i];
+		}
+		System.out.printf("%s: mean %.1f us, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n", label,
+				total / 1e3 / count, latencies[count / 2] / 1e3, latencies[(int) (count * 0.99)] / 1e3,
+				latencies[(int) (count * 0.999)] / 1e3, latencies[count - 1] / 1e3);
+	}
+
+	/**
+	 * Checks that a fresh engine given every revealed cell at once counts the same groups exactly and, when every
+	 * group was counted, gives the same probabilities. Approximations of a group too large to count may differ. Also
+	 * checks that no cell certain to be safe or a mine is wrong
+	 */
+	private static void check(Board board, double[] probabilities, boolean exact) {
+		ProbabilityEngine fresh = new ProbabilityEngine(board);
+		int[] revealed = new int[board.getRevealedCount()];
+		int n = 0;
+		for(int cell = 0; cell < board.size(); cell++) {
+			if(board.getState(cell) == Board.REVEALED){
+				revealed[n++] = cell;
+			}
+		}
+		fresh.cellsChanged(revealed);
+		double[] expected = fresh.getProbabilities();
+		if(exact != fresh.isExact()){
+			throw new AssertionError("Exact " + exact + " but " + fresh.isExact() + " when computed from scratch");
+		}
+		for(int cell = 0; cell < board.size(); cell++) {
+			double p = probabilities[cell];
+			if(exact && Math.abs(p - expected[cell]) > 1e-9 && !(Double.isNaN(p) && Double.isNaN(expected[cell]))){
+				throw new AssertionError("Cell " + cell + " has probability " + p + " but " + expected[cell]
+						+ " when computed from scratch");
+			}
+			if((p == 0 && board.isMine(cell)) || (p == 1 && !board.isMine(cell))){
+				throw new AssertionError("Cell " + cell + " is certain but wrong");
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package minesweep;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark for the zero-cell cascade of the first click. The board is rebuilt before every invocation since
+ * revealing changes it, so only the reveal itself is measured.
+ * @author Martin Wallace
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevealBenchmark {
+
+	@Param({"beginner", "intermediate", "expert", "large"})
+	public String size;
+
+	private int rows, cols, first;
+	private int[] mineCells;
+	private Board board;
+
+	@Setup(Level.Trial)
+	public void setUpLayout() {
+		int[] values = BoardBenchmark.values(size);
+		rows = values[MineSweeper.ROW];
+		cols = values[MineSweeper.COL];
+		first = (rows / 2) * cols + cols / 2;
+		Board layout = new Board(rows, cols);
+		layout.placeMines(values[MineSweeper.MINES], first, new SplittableRandom(42)::nextInt);
+		mineCells = new int[layout.getMineCount()];
+		int n = 0;
+		for(int cell = 0; cell < layout.size(); cell++) {
+			if(layout.isMine(cell)){
+				mineCells[n++] = cell;
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpBoard() {
+		board = new Board(rows, cols);
+		for(int cell : mineCells) {
+			board.setMine(cell);
+		}
+		board.computeCounts();
+	}
+
+	@Benchmark
+	public int[] firstClickCascade() {
+		return board.reveal(first);
+	}
+}
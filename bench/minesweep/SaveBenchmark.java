@@ -0,0 +1,73 @@
+package minesweep;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Saves and restores half played boards of growing size and reports the file size and how long each takes. Every
+ * restored board is checked against the one that was saved.
+ * @author Martin Wallace
+ */
+public class SaveBenchmark {
+
+	private static final int[][] SIZES = {{16, 32, 99}, {100, 100, 1500}, {1000, 1000, 150000}, {4000, 4000, 2400000}};
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws Exception {
+		Path file = Files.createTempFile("minesweep", ".save");
+		try {
+			System.out.printf("%-14s %12s %12s %12s%n", "board", "bytes", "save ms", "restore ms");
+			for(int[] values : SIZES) {
+				Board board = halfPlayed(values, new SplittableRandom(values[MineSweeper.ROW]));
+				SavedGame game = new SavedGame(-1, 123456, board);
+				long save = Long.MAX_VALUE, restore = Long.MAX_VALUE;
+				for(int round = 0; round < ROUNDS; round++) {
+					long start = System.nanoTime();
+					game.write(file);
+					save = Math.min(save, System.nanoTime() - start);
+					start = System.nanoTime();
+					SavedGame restored = SavedGame.read(file);
+					restore = Math.min(restore, System.nanoTime() - start);
+					check(game, restored);
+				}
+				System.out.printf("%-14s %12d %12.3f %12.3f%n", NoGuessGenerator.key(values), Files.size(file),
+						save / 1e6, restore / 1e6);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * @return a board with some cells revealed, some flagged and the rest covered
+	 */
+	private static Board halfPlayed(int[] values, SplittableRandom random) {
+		Board board = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+		board.placeMines(values[MineSweeper.MINES], -1, random::nextInt);
+		board.computeCounts();
+		for(int i = 0; i < board.size() / 50; i++) {
+			int cell = random.nextInt(board.size());
+			if(board.isMine(cell)){
+				board.toggleFlag(cell);
+			}else{
+				board.reveal(cell);
+			}
+		}
+		return board;
+	}
+
+	private static void check(SavedGame saved, SavedGame restored) {
+		Board a = saved.board, b = restored.board;
+		if(a.getRows() != b.getRows() || a.getCols() != b.getCols() || a.getMineCount() != b.getMineCount()
+				|| a.getFlagCount() != b.getFlagCount() || a.getRevealedCount() != b.getRevealedCount()
+				|| saved.elapsed != restored.elapsed || saved.difficulty != restored.difficulty){
+			throw new AssertionError("Restored game differs from the saved one");
+		}
+		for(int cell = 0; cell < a.size(); cell++) {
+			if(a.isMine(cell) != b.isMine(cell) || a.getState(cell) != b.getState(cell) || a.getCount(cell) != b.getCount(cell)){
+				throw new AssertionError("Cell " + cell + " differs after restoring");
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package minesweep;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Measures what-if exploration on a half played board. First compares trying a move under a snapshot and restoring
+ * it with trying it on a copy of the board, for boards of growing size. Then searches every order of revealing a few
+ * safe frontier cells, once exploring every node and once skipping positions already in a
+ * {@link TranspositionTable}, and reports the nodes visited and the table's hit rate. The incremental hash is checked
+ * against one computed from scratch throughout.
+ * <p>
+ * Usage: {@code SnapshotBenchmark [depth] [branching] [table capacity]}
+ * @author Martin Wallace
+ */
+public class SnapshotBenchmark {
+
+	private static final int[][] SIZES = {{16, 32, 99}, {100, 100, 1600}, {1000, 1000, 160000}};
+	private static final int TRIES = 20000;
+
+	private static long nodes;
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int branching = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+		int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 16;
+
+		System.out.printf("%-14s %14s %14s%n", "board", "snapshot ns", "copy ns");
+		for(int[] values : SIZES) {
+			Board board = halfPlayed(values, new SplittableRandom(values[MineSweeper.ROW]));
+			SplittableRandom random = new SplittableRandom(1);
+			board.getHash(); // so the hash is kept up to date while measuring
+			int tries = (int) Math.min(TRIES, 4e8 / board.size());
+			long snapshot = Long.MAX_VALUE, copy = Long.MAX_VALUE;
+			for(int round = 0; round < 5; round++) {
+				long start = System.nanoTime();
+				for(int i = 0; i < tries; i++) {
+					int s = board.snapshot();
+					board.reveal(safeCell(board, random));
+					board.restore(s);
+				}
+				snapshot = Math.min(snapshot, (System.nanoTime() - start) / tries);
+				start = System.nanoTime();
+				for(int i = 0; i < tries; i++) {
+					copy(board).reveal(safeCell(board, random));
+				}
+				copy = Math.min(copy, (System.nanoTime() - start) / tries);
+			}
+			if(board.getHash() != board.computeHash()){
+				throw new AssertionError("Hash differs from the one computed from scratch after restoring");
+			}
+			System.out.printf("%-14s %14d %14d%n", NoGuessGenerator.key(values), snapshot, copy);
+		}
+
+		Board board = halfPlayed(MineSweeper.VALUES[MineSweeper.EXPERT], new SplittableRandom(7));
+		long hash = board.getHash();
+		System.out.printf("%nsearching %d reveals deep, %d frontier cells a node%n", depth, branching);
+		System.out.printf("%-10s %12s %10s %12s %12s %10s%n", "table", "nodes", "ms", "hits", "replaced", "hit rate");
+		for(TranspositionTable<Integer> table : Arrays.asList(null, new TranspositionTable<Integer>(capacity),
+				new TranspositionTable<Integer>(capacity / 64))) {
+			nodes = 0;
+			long start = System.nanoTime();
+			search(board, depth, branching, table);
+			long time = System.nanoTime() - start;
+			if(board.getHash() != hash || board.computeHash() != hash){
+				throw new AssertionError("Search did not restore the board");
+			}
+			System.out.printf("%-10s %12d %10.1f %12d %12d %9.1f%%%n", table == null ? "none" : table.capacity(), nodes,
+					time / 1e6, table == null ? 0 : table.getHits(), table == null ? 0 : table.getReplaced(),
+					table == null ? 0 : 100.0 * table.getHits() / (table.getHits() + table.getMisses()));
+		}
+	}
+
+	/**
+	 * Visits every position reached by revealing up to depth of the first safe cells on the frontier, in any order
+	 */
+	private static void search(Board board, int depth, int branching, TranspositionTable<Integer> table) {
+		nodes++;
+		if(nodes % 4096 == 0 && board.getHash() != board.computeHash()){
+			throw new AssertionError("Incremental hash differs from the one computed from scratch");
+		}
+		if(depth == 0){
+			return;
+		}
+		if(table != null){
+			Integer searched = table.get(board.getHash());
+			if(searched != null && searched >= depth){
+				return;
+			}
+		}
+		int tried = 0;
+		for(int cell = 0; cell < board.size() && tried < branching; cell++) {
+			if(board.getState(cell) == Board.COVERED && !board.isMine(cell) && onFrontier(board, cell)){
+				tried++;
+				int s = board.snapshot();
+				board.reveal(cell);
+				search(board, depth - 1, branching, table);
+				board.restore(s);
+			}
+		}
+		if(table != null){
+			table.put(board.getHash(), depth);
+		}
+	}
+
+	private static boolean onFrontier(Board board, int cell) {
+		for(int neighbor : board.neighborhood(cell)) {
+			if(board.getState(neighbor) == Board.REVEALED){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int safeCell(Board board, SplittableRandom random) {
+		int cell;
+		do {
+			cell = random.nextInt(board.size());
+		} while(board.getState(cell) != Board.COVERED || board.isMine(cell));
+		return cell;
+	}
+
+	/**
+	 * @return a copy of the board the way a search without snapshots would make one for every move it tries
+	 */
+	private static Board copy(Board board) {
+		Board copy = new Board(board.getRows(), board.getCols());
+		copy.loadMines(board.mineWords());
+		copy.computeCounts();
+		for(int cell = 0; cell < board.size(); cell++) {
+			if(board.getState(cell) != Board.COVERED){
+				copy.restoreState(cell, board.getState(cell));
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * @return a board with about a third of its safe cells revealed by the solver from the middle
+	 */
+	private static Board halfPlayed(int[] values, SplittableRandom random) {
+		Board board = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+		int start = board.index(board.getRows() / 2, board.getCols() / 2);
+		board.placeMines(values[MineSweeper.MINES], start, random::nextInt);
+		board.computeCounts();
+		Solver solver = new Solver(board);
+		int cell = start;
+		while(board.getRevealedCount() < (board.size() - board.getMineCount()) / 3) {
+			solver.cellsChanged(board.reveal(cell));
+			cell = solver.nextSafe();
+			if(cell < 0){
+				cell = safeCell(board, random);
+			}
+		}
+		return board;
+	}
+}
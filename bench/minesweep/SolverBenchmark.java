@@ -0,0 +1,69 @@
+package minesweep;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Plays expert games with the solver and reports how long it takes to update the frontier and find the next safe
+ * cell after each move. Every deduction is also checked against the real board.
+ * @author Martin Wallace
+ */
+public class SolverBenchmark {
+
+	private static final int WARMUP_GAMES = 500, GAMES = 3000;
+
+	public static void main(String[] args) {
+		int[] values = MineSweeper.VALUES[MineSweeper.EXPERT];
+		long[] latencies = new long[1 << 20];
+		int moves = 0, wins = 0;
+		for(int game = 0; game < WARMUP_GAMES + GAMES; game++) {
+			SplittableRandom random = new SplittableRandom(game);
+			Board board = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+			Solver solver = new Solver(board);
+			int cell = board.index(board.getRows() / 2, board.getCols() / 2);
+			board.placeMines(values[MineSweeper.MINES], cell, new SplittableRandom(random.nextLong())::nextInt);
+			board.computeCounts();
+			while(true) {
+				int[] changed = board.reveal(cell);
+				if(board.isLost() || board.isWon()){
+					break;
+				}
+				long start = System.nanoTime();
+				solver.cellsChanged(changed);
+				int safe = solver.nextSafe();
+				long time = System.nanoTime() - start;
+				if(game >= WARMUP_GAMES && moves < latencies.length){
+					latencies[moves++] = time;
+				}
+				check(board, solver);
+				if(safe >= 0){
+					cell = safe;
+				}else{
+					do {
+						cell = random.nextInt(board.size());
+					} while(!solver.isUnknown(cell));
+				}
+			}
+			if(game >= WARMUP_GAMES && board.isWon()){
+				wins++;
+			}
+		}
+		Arrays.sort(latencies, 0, moves);
+		long total = 0;
+		for(int i = 0; i < moves; i++) {
+			total += latencies[i];
+		}
+		System.out.printf("%d expert games, %d moves, %.1f%% won%n", GAMES, moves, 100.0 * wins / GAMES);
+		System.out.printf("per move: mean %.1f us, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+				total / 1e3 / moves, latencies[moves / 2] / 1e3, latencies[(int) (moves * 0.99)] / 1e3,
+				latencies[(int) (moves * 0.999)] / 1e3, latencies[moves - 1] / 1e3);
+	}
+
+	private static void check(Board board, Solver solver) {
+		for(int cell = 0; cell < board.size(); cell++) {
+			if(solver.isKnownMine(cell) != board.isMine(cell) && (solver.isKnownMine(cell) || solver.isKnownSafe(cell))){
+				throw new AssertionError("Solver made a wrong deduction about cell " + cell);
+			}
+		}
+	}
+}
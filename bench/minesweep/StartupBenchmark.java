@@ -0,0 +1,110 @@
+package minesweep;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the game in a new JVM again and again, once in the terminal and once in a window, and reports the time from
+ * launching the JVM until the first frame is up, as printed by {@code -Dminesweep.stats=true}. One more launch of
+ * each with {@code -verbose:class} counts the classes loaded by then and how many of them are AWT or Swing classes.
+ * The window needs a display; without one it is reported as failed.
+ * <p>
+ * Usage: {@code StartupBenchmark [launches]}
+ * @author Martin Wallace
+ */
+public class StartupBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int launches = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classpath = System.getProperty("java.class.path");
+		System.out.printf("%-10s %10s %10s %10s %10s %12s%n", "mode", "min ms", "median ms", "max ms", "classes", "awt/swing");
+		for(String mode : new String[]{"terminal", "window"}) {
+			List<String> command = new ArrayList<>(Arrays.asList(java, "-Dminesweep.stats=true",
+					"-Dminesweep.replays=none", "-cp", classpath, "minesweep.MineSweeper"));
+			if(mode.equals("terminal")){
+				command.add("--terminal");
+			}
+			long[] times = new long[launches];
+			String failure = null;
+			for(int i = 0; i < launches && failure == null; i++) {
+				Launch launch = launch(command, null);
+				times[i] = launch.nanos;
+				failure = launch.failure;
+			}
+			if(failure != null){
+				System.out.printf("%-10s failed: %s%n", mode, failure);
+				continue;
+			}
+			Arrays.sort(times);
+			Path classes = Files.createTempFile("minesweep", ".classes");
+			try {
+				List<String> verbose = new ArrayList<>(command);
+				verbose.add(1, "-verbose:class");
+				launch(verbose, classes.toFile());
+				long loaded = 0, desktop = 0;
+				for(String line : Files.readAllLines(classes, StandardCharsets.ISO_8859_1)) {
+					if(line.startsWith("[Loaded ") || line.contains("class,load")){
+						loaded++;
+						if(line.contains(" java.awt.") || line.contains(" javax.swing.") || line.contains(" sun.awt.")){
+							desktop++;
+						}
+					}
+				}
+				System.out.printf("%-10s %10.1f %10.1f %10.1f %10d %12d%n", mode, times[0] / 1e6,
+						times[launches / 2] / 1e6, times[launches - 1] / 1e6, loaded, desktop);
+			} finally {
+				Files.deleteIfExists(classes);
+			}
+		}
+	}
+
+	/**
+	 * Starts the game and waits until it reports its first frame, then stops it
+	 * @param output - file the game's standard output is written to, or null to throw it away
+	 */
+	private static Launch launch(List<String> command, File output) throws IOException, InterruptedException {
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectOutput(output != null ? ProcessBuilder.Redirect.to(output) : ProcessBuilder.Redirect.to(devNull()));
+		long start = System.nanoTime();
+		Process process = builder.start();
+		Launch launch = new Launch();
+		try(BufferedReader errors = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+			String line, first = null; // first line of any error printed, skipping stack traces
+			while((line = errors.readLine()) != null) {
+				if(line.startsWith("Ready")){
+					launch.nanos = System.nanoTime() - start;
+					return launch;
+				}
+				if(first == null && !line.trim().isEmpty() && !line.trim().startsWith("at ")){
+					first = line.trim();
+				}
+			}
+			launch.failure = first != null ? first : "exited without a frame";
+			return launch;
+		} finally {
+			process.destroy();
+			if(!process.waitFor(5, TimeUnit.SECONDS)){
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	private static File devNull() {
+		return new File(File.separatorChar == '\\' ? "NUL" : "/dev/null");
+	}
+
+	private static class Launch {
+		long nanos;
+		String failure;
+	}
+}
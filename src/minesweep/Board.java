@@ -0,0 +1,581 @@
+package minesweep;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Headless MineSweeper board. Mines, adjacency counts and cell states are kept in flat primitive arrays indexed by
+ * {@code row * cols + col} so that boards with millions of cells can be played or simulated without creating a
+ * Swing component per cell.
+ * <p>
+ * Every change of a cell state goes through one place that keeps a Zobrist hash of the position up to date, once
+ * the hash has been asked for, and while a snapshot is open logs the old state so the change can be undone.
+ * What-if searches take a snapshot, play moves and restore it instead of copying the board, paying only for the
+ * cells the moves changed, and can key a {@link TranspositionTable} by {@link #getHash()} so a position reached
+ * twice is only analyzed once.
+ * @author Martin Wallace
+ */
+public class Board implements PlayerView {
+
+	// Constants for the possible states of a cell
+	static final byte COVERED = 0, FLAGGED = 1, REVEALED = 2, EXPLODED = 3;
+
+	private final int rows, cols;
+	private final BitSet mines; // one bit per cell, set if the cell is a mine
+	private final byte[] counts; // number of mines surrounding each cell
+	private final byte[] states; // current state of each cell
+	private int[] stack = new int[64]; // worklist reused by every cascade
+	private int[] changed = new int[64]; // cells changed by the current move
+	private int changedCount;
+	private int mineCount, flagCount, revealedCount, explodedCount; // kept up to date as moves are made
+	private long hash; // Zobrist hash of the cell states, kept once hashed is set
+	private boolean hashed; // set by the first call to getHash, so boards never hashed do not pay for it
+	private long[] undo = new long[64]; // cell and old state of every change made while a snapshot is open
+	private int undoCount, snapshots;
+	private BoardListener listener;
+
+	/**
+	 * Constructor for an empty board with every cell covered
+	 * @param rows - the number of rows on the board
+	 * @param cols - the number of columns on the board
+	 */
+	public Board(int rows, int cols) {
+		if(rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Invalid board size " + rows + "x" + cols);
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.mines = new BitSet(rows * cols);
+		this.counts = new byte[rows * cols];
+		this.states = new byte[rows * cols];
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * @return the total number of cells on the board
+	 */
+	public int size() {
+		return counts.length;
+	}
+
+	/**
+	 * @param row - the row of the cell
+	 * @param col - the column of the cell
+	 * @return the flat index of the cell
+	 */
+	public int index(int row, int col) {
+		return row * cols + col;
+	}
+
+	public int row(int cell) {
+		return cell / cols;
+	}
+
+	public int col(int cell) {
+		return cell % cols;
+	}
+
+	/**
+	 * Sets the given cell to be a mine. Counts must be recomputed with {@link #computeCounts()} afterwards
+	 * @param cell - the index of the cell
+	 */
+	void setMine(int cell) {
+		if(!mines.get(cell)){
+			mines.set(cell);
+			mineCount++;
+		}
+	}
+
+	/**
+	 * @return the mines as a bit per cell, bit {@code i % 64} of long {@code i / 64} set if cell i is a mine. Trailing
+	 * longs with no mines are left out
+	 */
+	long[] mineWords() {
+		return mines.toLongArray();
+	}
+
+	/**
+	 * Replaces every mine on the board. Counts must be recomputed with {@link #computeCounts()} afterwards
+	 * @param words - the mines in the layout of {@link #mineWords()}
+	 */
+	void loadMines(long[] words) {
+		mines.clear();
+		mines.or(BitSet.valueOf(words));
+		if(mines.length() > size()){
+			mines.clear(size(), mines.length());
+		}
+		mineCount = mines.cardinality();
+	}
+
+	/**
+	 * Puts a covered cell back into a state it was saved in without firing any event
+	 * @param cell - the index of the cell
+	 * @param state - FLAGGED, REVEALED or EXPLODED
+	 */
+	void restoreState(int cell, int state) {
+		if(states[cell] != COVERED){
+			throw new IllegalStateException("Cell " + cell + " has already been restored");
+		}
+		if(state != FLAGGED && state != REVEALED && state != EXPLODED){
+			throw new IllegalArgumentException("Unknown state " + state);
+		}
+		set(cell, (byte) state);
+	}
+
+	/**
+	 * Changes the state of a cell, keeping the totals and the hash up to date and logging the old state while a
+	 * snapshot is open
+	 */
+	private void set(int cell, byte state) {
+		byte old = states[cell];
+		if(snapshots > 0){
+			if(undoCount == undo.length){
+				undo = Arrays.copyOf(undo, undo.length * 2);
+			}
+			undo[undoCount++] = (long) cell << 2 | old;
+		}
+		if(hashed){
+			hash ^= key(cell, old) ^ key(cell, state);
+		}
+		tally(old, -1);
+		tally(state, 1);
+		states[cell] = state;
+	}
+
+	/**
+	 * The same as {@link #set(int, byte)} for the covered cells a cascade reveals, which are most of the changes
+	 */
+	private void revealCovered(int cell) {
+		if(snapshots > 0){
+			if(undoCount == undo.length){
+				undo = Arrays.copyOf(undo, undo.length * 2);
+			}
+			undo[undoCount++] = (long) cell << 2 | COVERED;
+		}
+		if(hashed){
+			hash ^= key(cell, REVEALED);
+		}
+		revealedCount++;
+		states[cell] = REVEALED;
+	}
+
+	private void tally(byte state, int n) {
+		switch(state) {
+			case FLAGGED: flagCount += n; break;
+			case REVEALED: revealedCount += n; break;
+			case EXPLODED: explodedCount += n; break;
+			default: break;
+		}
+	}
+
+	/**
+	 * @return the random number a cell in a state adds to the hash. Covered cells add nothing, so an untouched board
+	 * hashes to 0 and only the cells a move changes are ever hashed. The numbers are mixed from the cell and state
+	 * rather than kept in a table, which would take 32 bytes a cell
+	 */
+	private static long key(int cell, byte state) {
+		return state == COVERED ? 0 : Simulator.mix(0x5851F42D4C957F2DL + ((long) cell << 2 | state));
+	}
+
+	/**
+	 * @return the Zobrist hash of the state of every cell. Two positions of the same board with the same states have
+	 * the same hash, however they were reached. The first call hashes every cell and from then on the hash is updated
+	 * with each change
+	 */
+	public long getHash() {
+		if(!hashed){
+			hash = computeHash();
+			hashed = true;
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the hash of the current position computed from scratch, which {@link #getHash()} must always equal
+	 */
+	long computeHash() {
+		long h = 0;
+		for(int cell = 0; cell < states.length; cell++) {
+			h ^= key(cell, states[cell]);
+		}
+		return h;
+	}
+
+	/**
+	 * Opens a snapshot of the cell states. Every change made until it is closed is logged so
+	 * {@link #restore(int)} can take the board back to this position. Snapshots nest and must be closed with
+	 * {@link #restore(int)} or {@link #commit(int)} in the reverse order they were opened
+	 * @return the snapshot to pass to restore or commit
+	 */
+	int snapshot() {
+		snapshots++;
+		return undoCount;
+	}
+
+	/**
+	 * Undoes every change made since the snapshot was opened and closes it. No event is fired for the undone cells
+	 * @param snapshot - a snapshot from {@link #snapshot()}, the most recently opened one still open
+	 */
+	void restore(int snapshot) {
+		if(snapshots == 0 || snapshot > undoCount){
+			throw new IllegalStateException("Snapshot " + snapshot + " is not open");
+		}
+		int open = snapshots;
+		snapshots = 0; // so undoing is not logged itself
+		while(undoCount > snapshot) {
+			long entry = undo[--undoCount];
+			set((int) (entry >>> 2), (byte) (entry & 3));
+		}
+		snapshots = open - 1;
+	}
+
+	/**
+	 * Closes a snapshot keeping the changes made since it was opened, which stay undoable by any snapshot still open
+	 * @param snapshot - a snapshot from {@link #snapshot()}, the most recently opened one still open
+	 */
+	void commit(int snapshot) {
+		if(snapshots == 0 || snapshot > undoCount){
+			throw new IllegalStateException("Snapshot " + snapshot + " is not open");
+		}
+		if(--snapshots == 0){
+			undoCount = 0;
+		}
+	}
+
+	/**
+	 * Places mines on the board using a partial Fisher-Yates shuffle of the cells that are allowed to hold a mine.
+	 * Every draw picks a new mine so this takes O(count) time whatever the density, and the same sequence of random
+	 * numbers always gives the same board. Counts must be recomputed with {@link #computeCounts()} afterwards
+	 * @param count - the number of mines to place
+	 * @param safeCell - the cell that, along with its neighbors, must not hold a mine, or -1 for none
+	 * @param nextInt - returns a uniformly distributed int between 0 (inclusive) and the given bound (exclusive)
+	 */
+	void placeMines(int count, int safeCell, IntUnaryOperator nextInt) {
+		int[] excluded = safeCell < 0 ? new int[0] : neighborhood(safeCell);
+		int eligible = size() - excluded.length;
+		if(count < 0 || count > eligible){
+			throw new IllegalArgumentException("Can not place " + count + " mines in " + eligible + " cells");
+		}
+
+		// positions of the shuffled array that no longer hold their own index. Sparse boards only ever touch
+		// a few positions so those are kept in a map, dense boards use a plain array
+		int[] dense = null;
+		Map<Integer, Integer> sparse = null;
+		if(count >= eligible / 16){
+			dense = new int[eligible];
+			for(int i = 0; i < eligible; i++) {
+				dense[i] = i;
+			}
+		}else{
+			sparse = new HashMap<>(count * 4);
+		}
+
+		for(int k = 0; k < count; k++) {
+			int r = k + nextInt.applyAsInt(eligible - k);
+			int rank;
+			if(dense != null){
+				rank = dense[r];
+				dense[r] = dense[k];
+			}else{
+				rank = sparse.getOrDefault(r, r);
+				sparse.put(r, sparse.getOrDefault(k, k));
+			}
+			// skip over the excluded cells to turn the rank among eligible cells into a cell index
+			int cell = rank;
+			for(int e : excluded) {
+				if(e <= cell){
+					cell++;
+				}
+			}
+			setMine(cell);
+		}
+	}
+
+	/**
+	 * @return the cell and all of its neighbors in ascending order
+	 */
+	int[] neighborhood(int cell) {
+		int row = row(cell), col = col(cell);
+		int rowStart = Math.max(row - 1, 0), rowEnd = Math.min(row + 1, rows - 1);
+		int colStart = Math.max(col - 1, 0), colEnd = Math.min(col + 1, cols - 1);
+		int[] cells = new int[(rowEnd - rowStart + 1) * (colEnd - colStart + 1)];
+		int n = 0;
+		for(int i = rowStart; i <= rowEnd; i++) {
+			for(int j = colStart; j <= colEnd; j++) {
+				cells[n++] = i * cols + j;
+			}
+		}
+		return cells;
+	}
+
+	public boolean isMine(int cell) {
+		return mines.get(cell);
+	}
+
+	/**
+	 * @return the index of the first mine at or after the given cell, or -1 if there is none
+	 */
+	int nextMine(int from) {
+		return mines.nextSetBit(from);
+	}
+
+	/**
+	 * @return the number of mines surrounding the cell
+	 */
+	public int getCount(int cell) {
+		return counts[cell];
+	}
+
+	/**
+	 * @return the state of the cell, one of COVERED, FLAGGED, REVEALED or EXPLODED
+	 */
+	public int getState(int cell) {
+		return states[cell];
+	}
+
+	/**
+	 * @return the number of mines on the board
+	 */
+	public int getMineCount() {
+		return mineCount;
+	}
+
+	/**
+	 * @return the number of flagged cells on the board
+	 */
+	public int getFlagCount() {
+		return flagCount;
+	}
+
+	/**
+	 * @return the number of safe cells that have been revealed
+	 */
+	public int getRevealedCount() {
+		return revealedCount;
+	}
+
+	/**
+	 * @return true if a mine has been revealed
+	 */
+	public boolean isLost() {
+		return explodedCount > 0;
+	}
+
+	/**
+	 * @return true if every safe cell has been revealed and no mine has
+	 */
+	public boolean isWon() {
+		return explodedCount == 0 && revealedCount == size() - mineCount;
+	}
+
+	/**
+	 * @param listener - the listener notified of every move made on this board, or null for none
+	 */
+	public void setListener(BoardListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Computes the number of surrounding mines for every cell on the board
+	 */
+	void computeCounts() {
+		NeighborCounter.count(mines, rows, cols, counts);
+	}
+
+	/**
+	 * Computes the same counts as {@link #computeCounts()} one cell at a time. Kept as the reference the
+	 * bitboard counter is checked against
+	 */
+	void computeCountsScalar() {
+		boolean north, south, east, west;
+		for(int i = 0; i < rows; i++) {
+			for(int j = 0; j < cols; j++) {
+				int cell = i * cols + j;
+				int mineCount = 0;
+
+				north = i > 0;
+				south = i < rows - 1;
+				west = j > 0;
+				east = j < cols - 1;
+
+				// check up down left and right
+				if(north && mines.get(cell - cols)){ mineCount++; }
+				if(east && mines.get(cell + 1)) { mineCount++; }
+				if(south && mines.get(cell + cols)) { mineCount++; }
+				if(west && mines.get(cell - 1)) { mineCount++; }
+
+				// check corners
+				if(north && east && mines.get(cell - cols + 1)){ mineCount++; }
+				if(north && west && mines.get(cell - cols - 1)){ mineCount++; }
+				if(south && east && mines.get(cell + cols + 1)){ mineCount++; }
+				if(south && west && mines.get(cell + cols - 1)){ mineCount++; }
+
+				counts[cell] = (byte) mineCount;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the two cells are the same cell or touch each other, diagonals included
+	 */
+	public boolean isAdjacent(int a, int b) {
+		return Math.abs(row(a) - row(b)) <= 1 && Math.abs(col(a) - col(b)) <= 1;
+	}
+
+	/**
+	 * Reveals a covered cell. Revealing a mine explodes it and revealing a cell with no surrounding mines
+	 * reveals all of its neighbors as well
+	 * @param cell - the index of the cell
+	 * @return the indexes of every cell whose state changed, empty if the cell was not covered
+	 */
+	public int[] reveal(int cell) {
+		changedCount = 0;
+		boolean wasLost = isLost();
+		flood(cell);
+		return finishMove(wasLost);
+	}
+
+	/**
+	 * Reveals a cell and cascades out from it using an explicit worklist so large open areas can not overflow
+	 * the stack. Cells are marked revealed as they are pushed so each one is visited once
+	 * @param cell - the index of the cell
+	 */
+	private void flood(int cell) {
+		if(states[cell] != COVERED){
+			return;
+		}
+		if(mines.get(cell)){
+			set(cell, EXPLODED);
+			addChanged(cell);
+			return;
+		}
+		revealCovered(cell);
+		addChanged(cell);
+		if(counts[cell] != 0){
+			return;
+		}
+		int top = 0;
+		stack[top++] = cell;
+		while(top > 0) {
+			int next = stack[--top];
+			int row = row(next), col = col(next);
+			for(int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+				for(int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+					int neighbor = i * cols + j;
+					// neighbors of a zero cell are never mines so there is no need to check for one here
+					if(states[neighbor] == COVERED){
+						revealCovered(neighbor);
+						addChanged(neighbor);
+						if(counts[neighbor] == 0){
+							if(top == stack.length){
+								stack = Arrays.copyOf(stack, Math.min(stack.length * 2, counts.length));
+							}
+							stack[top++] = neighbor;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fires the events for the cells changed by the move that just finished
+	 * @param wasLost - true if the game had already been lost before the move
+	 * @return the indexes of the changed cells
+	 */
+	private int[] finishMove(boolean wasLost) {
+		int[] cells = Arrays.copyOf(changed, changedCount);
+		if(listener != null && cells.length > 0){
+			listener.cellsChanged(cells);
+			if(!wasLost && isLost()){
+				for(int cell : cells) {
+					if(states[cell] == EXPLODED){
+						listener.gameLost(cell);
+						break;
+					}
+				}
+			}else if(!wasLost && isWon()){
+				listener.gameWon();
+			}
+		}
+		return cells;
+	}
+
+	private void addChanged(int cell) {
+		if(changedCount == changed.length){
+			changed = Arrays.copyOf(changed, Math.min(changed.length * 2, counts.length));
+		}
+		changed[changedCount++] = cell;
+	}
+
+	/**
+	 * Toggles a covered cell between covered and flagged. Revealed cells are left alone
+	 * @param cell - the index of the cell
+	 * @return true if the state of the cell changed
+	 */
+	public boolean toggleFlag(int cell) {
+		if(states[cell] == COVERED){
+			set(cell, FLAGGED);
+		}else if(states[cell] == FLAGGED){
+			set(cell, COVERED);
+		}else{
+			return false;
+		}
+		if(listener != null){
+			listener.cellsChanged(new int[]{cell});
+			listener.flagsChanged(flagCount);
+		}
+		return true;
+	}
+
+	/**
+	 * Opens a cell the way a left click does: reveals it if it is covered and chords it if it is revealed
+	 * @param cell - the index of the cell
+	 * @return the indexes of every cell whose state changed
+	 */
+	public int[] open(int cell) {
+		return states[cell] == COVERED ? reveal(cell) : chord(cell);
+	}
+
+	/**
+	 * If a revealed cell has as many flagged neighbors as surrounding mines, reveals all of its covered neighbors
+	 * @param cell - the index of the revealed cell
+	 * @return the indexes of every cell whose state changed
+	 */
+	public int[] chord(int cell) {
+		changedCount = 0;
+		boolean wasLost = isLost();
+		if(states[cell] != REVEALED){
+			return new int[0];
+		}
+		int row = row(cell), col = col(cell);
+		int rowStart = Math.max(row - 1, 0), rowEnd = Math.min(row + 1, rows - 1);
+		int colStart = Math.max(col - 1, 0), colEnd = Math.min(col + 1, cols - 1);
+		int flagCount = 0;
+		for(int i = rowStart; i <= rowEnd; i++) {
+			for(int j = colStart; j <= colEnd; j++) {
+				if(states[i * cols + j] == FLAGGED){
+					flagCount++;
+				}
+			}
+		}
+		if(flagCount == counts[cell]){
+			for(int i = rowStart; i <= rowEnd; i++) {
+				for(int j = colStart; j <= colEnd; j++) {
+					flood(i * cols + j);
+				}
+			}
+		}
+		return finishMove(wasLost);
+	}
+}
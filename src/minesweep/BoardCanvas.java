@@ -0,0 +1,115 @@
+package minesweep;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+import javax.swing.ImageIcon;
+
+/**
+ * Board view that draws every cell itself in a single component. Mouse coordinates are mapped to cells here and
+ * changing a cell only repaints the rectangle of that cell, so the cost of a move does not grow with the board.
+ * @author Martin Wallace
+ */
+class BoardCanvas extends JComponent implements BoardView {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int rows, cols;
+	private final int cellWidth, cellHeight;
+	private final byte[] icons; // state constant of the icon shown in each cell
+	private double[] heat; // probability each cell is a mine, shaded over covered cells when not null
+
+	/**
+	 * @param game - the game clicks on the board are passed to
+	 * @param board - the board being shown
+	 */
+	BoardCanvas(MineSweeperFrame game, Board board) {
+		this.rows = board.getRows();
+		this.cols = board.getCols();
+		ImageIcon cover = Icons.get(MineSweeperButton.COVER);
+		this.cellWidth = cover.getIconWidth();
+		this.cellHeight = cover.getIconHeight();
+		this.icons = new byte[board.size()];
+		Arrays.fill(icons, (byte) MineSweeperButton.COVER);
+		setPreferredSize(new Dimension(cols * cellWidth, rows * cellHeight));
+		setOpaque(true);
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				int cell = cellAt(e.getX(), e.getY());
+				if(cell >= 0){
+					game.cellPressed(cell, e.getButton());
+				}
+			}
+
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				game.cellReleased();
+			}
+		});
+	}
+
+	/**
+	 * @return the index of the cell under the given point or -1 if the point is outside of the board
+	 */
+	private int cellAt(int x, int y) {
+		int col = x / cellWidth, row = y / cellHeight;
+		if(x < 0 || y < 0 || row >= rows || col >= cols){
+			return -1;
+		}
+		return row * cols + col;
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		// only draw the cells that intersect the area being repainted
+		Rectangle clip = g.getClipBounds();
+		if(clip == null){
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		int firstRow = Math.max(clip.y / cellHeight, 0);
+		int lastRow = Math.min((clip.y + clip.height - 1) / cellHeight, rows - 1);
+		int firstCol = Math.max(clip.x / cellWidth, 0);
+		int lastCol = Math.min((clip.x + clip.width - 1) / cellWidth, cols - 1);
+		for(int i = firstRow; i <= lastRow; i++) {
+			for(int j = firstCol; j <= lastCol; j++) {
+				int cell = i * cols + j;
+				Icons.get(icons[cell]).paintIcon(this, g, j * cellWidth, i * cellHeight);
+				if(heat != null && icons[cell] == MineSweeperButton.COVER && !Double.isNaN(heat[cell])){
+					g.setColor(Icons.heat(heat[cell]));
+					g.fillRect(j * cellWidth, i * cellHeight, cellWidth, cellHeight);
+				}
+			}
+		}
+	}
+
+	@Override
+	public JComponent getComponent() {
+		return this;
+	}
+
+	@Override
+	public int getIcon(int cell) {
+		return icons[cell];
+	}
+
+	@Override
+	public void setIcon(int cell, int state) {
+		icons[cell] = (byte) state;
+		repaint((cell % cols) * cellWidth, (cell / cols) * cellHeight, cellWidth, cellHeight);
+	}
+
+	@Override
+	public void setHeat(double[] probabilities) {
+		if(probabilities == null && heat == null){
+			return;
+		}
+		heat = probabilities;
+		repaint();
+	}
+}
@@ -0,0 +1,32 @@
+package minesweep;
+
+/**
+ * Receives the events fired by a {@link Board} as moves are made so the game never has to scan the board to find
+ * out what happened.
+ * @author Martin Wallace
+ */
+public interface BoardListener {
+
+	/**
+	 * Called after every move that changed at least one cell, before any win or loss event for that move
+	 * @param cells - the indexes of the cells whose state changed
+	 */
+	default void cellsChanged(int[] cells) { }
+
+	/**
+	 * Called when a cell is flagged or unflagged
+	 * @param flagCount - the number of flagged cells on the board
+	 */
+	default void flagsChanged(int flagCount) { }
+
+	/**
+	 * Called once when the last safe cell is revealed
+	 */
+	default void gameWon() { }
+
+	/**
+	 * Called once when the first mine is revealed
+	 * @param cell - the index of the mine that was revealed
+	 */
+	default void gameLost(int cell) { }
+}
@@ -0,0 +1,229 @@
+package minesweep;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pools of boards generated ahead of time on a background thread so the first click does not have to wait
+ * for generation. Boards are generated around a canonical safe start in the middle of the board and kept as their
+ * mines, then moved to wherever the first click lands by shifting every mine by the same amount, wrapping around the
+ * edges. The 3x3 area around the start stays free of mines wherever it is moved to.
+ * <p>
+ * Wrapping does not give quite the boards {@link Board#placeMines} would for the first click. On an edge the 3x3 area
+ * wraps onto the opposite edge, so those cells, three along an edge and five in a corner, never hold a mine and the
+ * other cells hold slightly more than their share. Boards placed by the first click itself only keep its own
+ * neighborhood clear.
+ * <p>
+ * Shifting can change which mines touch each other across the edges, so a no-guess board is checked again with
+ * the solver after it is moved and thrown away if it no longer passes. A board size the generator keeps failing to
+ * find a no-guess board for stops being refilled after {@link #MAX_FAILURES} tries in a row, until the next
+ * prefetch, and first clicks fall back to generating their own board.
+ * @author Martin Wallace
+ */
+public class BoardPool {
+
+	static final int MAX_FAILURES = 3; // no-guess boards not found in a row before a refill gives up
+
+	private final int capacity;
+	private final NoGuessGenerator generator;
+	private final long noGuessBudget;
+	private final Random seeds;
+	private final ExecutorService producer;
+	private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+	/**
+	 * @param capacity - the number of boards kept ready for each board size and mode
+	 * @param generator - generates the no-guess boards. Should not be shared with boards generated on demand, since a
+	 * refill would hold its threads while a first click waits. A generator with one thread searches on the pool's own
+	 * low priority thread
+	 * @param noGuessBudget - milliseconds allowed to generate each no-guess board
+	 * @param seeds - source of the seeds boards are generated from
+	 */
+	public BoardPool(int capacity, NoGuessGenerator generator, long noGuessBudget, Random seeds) {
+		this.capacity = capacity;
+		this.generator = generator;
+		this.noGuessBudget = noGuessBudget;
+		this.seeds = seeds;
+		this.producer = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "board-pool");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	}
+
+	/**
+	 * A board waiting in a pool, holding its mines placed around the canonical start and the seed they came from
+	 */
+	public static class PooledBoard {
+		public final long seed;
+		public final int origin; // index of the canonical safe start the mines were placed around
+		final long[] mines; // in the layout of Board.mineWords()
+
+		/**
+		 * Places the mines from the seed around the canonical start
+		 * @param values - rows, cols and mines of the board
+		 */
+		PooledBoard(int[] values, long seed, int origin) {
+			this.seed = seed;
+			this.origin = origin;
+			Board source = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+			source.placeMines(values[MineSweeper.MINES], origin, new SplittableRandom(seed)::nextInt);
+			this.mines = source.mineWords();
+		}
+	}
+
+	/**
+	 * Starts filling the pool for a board size and mode in the background if it is not full already
+	 * @param values - rows, cols and mines of the board
+	 * @param noGuess - true for boards that can be won without guessing
+	 */
+	public void prefetch(int[] values, boolean noGuess) {
+		Pool pool = pool(values, noGuess);
+		if(pool.queue.remainingCapacity() > 0 && pool.refilling.compareAndSet(false, true)){
+			producer.execute(() -> refill(pool));
+		}
+	}
+
+	/**
+	 * Takes a board from the pool and places its mines on the target board moved to the first click. Counts still
+	 * need to be computed. Starts refilling the pool in the background
+	 * @param values - rows, cols and mines of the board
+	 * @param noGuess - true for boards that can be won without guessing
+	 * @param first - the index of the first click
+	 * @param target - the empty board to place the mines on
+	 * @return the board that was used, or null if the pool had no usable board
+	 */
+	public PooledBoard take(int[] values, boolean noGuess, int first, Board target) {
+		Pool pool = pool(values, noGuess);
+		try {
+			PooledBoard pooled;
+			while((pooled = pool.queue.poll()) != null) {
+				if(noGuess && pooled.origin != first){
+					Board check = new Board(target.getRows(), target.getCols());
+					place(pooled, first, check);
+					check.computeCounts();
+					if(!NoGuessGenerator.isNoGuess(check, first)){
+						pool.rejected.increment();
+						Metrics.REJECTED.add(1);
+						continue;
+					}
+				}
+				place(pooled, first, target);
+				pool.hits.increment();
+				return pooled;
+			}
+			pool.misses.increment();
+			return null;
+		} finally {
+			prefetch(values, noGuess);
+		}
+	}
+
+	/**
+	 * Places the mines of a pooled board on the target board, moved so the canonical start lands on the first click
+	 */
+	static void place(PooledBoard pooled, int first, Board target) {
+		int rows = target.getRows(), cols = target.getCols();
+		int rowShift = target.row(first) - target.row(pooled.origin);
+		int colShift = target.col(first) - target.col(pooled.origin);
+		for(int word = 0; word < pooled.mines.length; word++) {
+			for(long bits = pooled.mines[word]; bits != 0; bits &= bits - 1) {
+				int mine = word * 64 + Long.numberOfTrailingZeros(bits);
+				int row = Math.floorMod(target.row(mine) + rowShift, rows);
+				int col = Math.floorMod(target.col(mine) + colShift, cols);
+				target.setMine(target.index(row, col));
+			}
+		}
+	}
+
+	/**
+	 * @return the canonical safe start for a board size
+	 */
+	static int origin(int[] values) {
+		return (values[MineSweeper.ROW] / 2) * values[MineSweeper.COL] + values[MineSweeper.COL] / 2;
+	}
+
+	/**
+	 * Generates boards until the pool is full. Runs on the producer thread
+	 */
+	private void refill(Pool pool) {
+		try {
+			int origin = origin(pool.values);
+			int failures = 0;
+			while(pool.queue.remainingCapacity() > 0) {
+				long seed = seeds.nextLong();
+				if(pool.noGuess){
+					OptionalLong accepted = generator.generate(pool.values, origin, seed, noGuessBudget);
+					if(!accepted.isPresent()){
+						if(++failures == MAX_FAILURES){
+							return; // too dense or too large to find one in time, take() misses instead of waiting
+						}
+						continue;
+					}
+					failures = 0;
+					seed = accepted.getAsLong();
+				}
+				pool.queue.offer(new PooledBoard(pool.values, seed, origin));
+			}
+		} finally {
+			pool.refilling.set(false);
+		}
+	}
+
+	private Pool pool(int[] values, boolean noGuess) {
+		return pools.computeIfAbsent(NoGuessGenerator.key(values) + (noGuess ? " no-guess" : ""),
+				k -> new Pool(values, noGuess, capacity));
+	}
+
+	/**
+	 * @return the number of first clicks served from the pool for a board size and mode
+	 */
+	public long getHits(int[] values, boolean noGuess) {
+		return pool(values, noGuess).hits.sum();
+	}
+
+	/**
+	 * @return the number of first clicks that found no usable board in the pool for a board size and mode
+	 */
+	public long getMisses(int[] values, boolean noGuess) {
+		return pool(values, noGuess).misses.sum();
+	}
+
+	/**
+	 * @return the number of no-guess boards thrown away because they needed guessing once moved
+	 */
+	public long getRejected(int[] values, boolean noGuess) {
+		return pool(values, noGuess).rejected.sum();
+	}
+
+	/**
+	 * @return the number of boards ready in the pool for a board size and mode
+	 */
+	public int getSize(int[] values, boolean noGuess) {
+		return pool(values, noGuess).queue.size();
+	}
+
+	private static class Pool {
+		final int[] values;
+		final boolean noGuess;
+		final BlockingQueue<PooledBoard> queue;
+		final AtomicBoolean refilling = new AtomicBoolean();
+		final LongAdder hits = new LongAdder(), misses = new LongAdder(), rejected = new LongAdder();
+
+		Pool(int[] values, boolean noGuess, int capacity) {
+			this.values = values;
+			this.noGuess = noGuess;
+			this.queue = new ArrayBlockingQueue<>(capacity);
+		}
+	}
+}
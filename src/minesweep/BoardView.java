@@ -0,0 +1,36 @@
+package minesweep;
+
+import javax.swing.JComponent;
+
+/**
+ * A component that draws the cells of a board and passes mouse presses on them back to the game.
+ * Icons are identified by the state constants in {@link MineSweeperButton}.
+ * @author Martin Wallace
+ */
+interface BoardView {
+
+	/**
+	 * @return the component to add to the frame
+	 */
+	JComponent getComponent();
+
+	/**
+	 * @param cell - the index of the cell
+	 * @return the state constant of the icon currently shown for the cell
+	 */
+	int getIcon(int cell);
+
+	/**
+	 * Changes the icon shown for a cell. Only the cell itself needs to be repainted
+	 * @param cell - the index of the cell
+	 * @param state - the state constant of the icon to show
+	 */
+	void setIcon(int cell, int state);
+
+	/**
+	 * Shades every covered cell by the probability it is a mine, from green for safe to red for a mine
+	 * @param probabilities - for each cell the probability it is a mine, NaN for no shading, or null to remove
+	 * the shading from every cell
+	 */
+	void setHeat(double[] probabilities);
+}
@@ -0,0 +1,52 @@
+package minesweep;
+
+import java.awt.GridLayout;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+
+/**
+ * Board view made of one {@link MineSweeperButton} per cell laid out in a grid
+ * @author Martin Wallace
+ */
+class ButtonGridView implements BoardView {
+
+	private final JPanel panel;
+	private final MineSweeperButton[] grid;
+
+	/**
+	 * Creates a button for every cell of the board
+	 * @param game - the game the buttons pass their clicks to
+	 * @param board - the board being shown
+	 */
+	ButtonGridView(MineSweeperFrame game, Board board) {
+		panel = new JPanel(new GridLayout(board.getRows(), board.getCols()));
+		grid = new MineSweeperButton[board.size()];
+		for(int cell = 0; cell < grid.length; cell++) {
+			grid[cell] = new MineSweeperButton(game, cell);
+			panel.add(grid[cell]);
+		}
+	}
+
+	@Override
+	public JComponent getComponent() {
+		return panel;
+	}
+
+	@Override
+	public int getIcon(int cell) {
+		return grid[cell].getState();
+	}
+
+	@Override
+	public void setIcon(int cell, int state) {
+		grid[cell].setState(state);
+	}
+
+	@Override
+	public void setHeat(double[] probabilities) {
+		for(int cell = 0; cell < grid.length; cell++) {
+			grid[cell].setHeat(probabilities == null ? Double.NaN : probabilities[cell]);
+		}
+	}
+}
@@ -0,0 +1,381 @@
+package minesweep;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Headless board with no edges, split into square chunks of {@link #CHUNK} cells a side. The mines of a chunk are
+ * generated from the world seed and the chunk's coordinates the first time the chunk is touched, so the same world
+ * seed always gives the same world wherever the player goes first.
+ * <p>
+ * Only a bounded number of chunks are kept in memory, evicting the least recently used. An evicted chunk the player
+ * never changed is simply dropped and generated again when it is next touched. One with revealed or flagged cells
+ * leaves behind its cell states packed into 2 bits each, so memory only grows with the area actually played and
+ * not with how far the player scrolls.
+ * <p>
+ * Cells are addressed by row and column, both any int. Changed cells are reported as longs packing the row in the
+ * high 32 bits and the column in the low 32 bits, see {@link #cell(int, int)}. The cells around (0, 0) never hold a
+ * mine, so a game can always start there.
+ * @author Martin Wallace
+ */
+public class EndlessBoard {
+
+	static final int SHIFT = 5;
+	static final int CHUNK = 1 << SHIFT; // cells along each side of a chunk
+	private static final int MASK = CHUNK - 1;
+	private static final int CELLS = CHUNK * CHUNK;
+
+	private final long seed;
+	private final int minesPerChunk;
+	private final Map<Long, Chunk> loaded; // chunks in memory from least to most recently used
+	private final Map<Long, byte[]> deltas = new HashMap<>(); // packed states of evicted chunks the player changed
+	private Chunk last; // chunk of the last cell looked up, most lookups land in the same chunk
+	private long generated; // chunks generated since the board was created, including ones generated again
+	private long revealedCount, flagCount;
+	private boolean lost;
+	private long[] stack = new long[64]; // worklist reused by every cascade
+	private long[] changed = new long[64]; // cells changed by the current move
+	private int changedCount;
+
+	/**
+	 * @param seed - the world seed every chunk is generated from
+	 * @param density - the fraction of the cells of a chunk that are mines
+	 * @param capacity - the most chunks kept in memory
+	 */
+	public EndlessBoard(long seed, double density, int capacity) {
+		if(density < 0 || density >= 1 || capacity < 9){
+			throw new IllegalArgumentException("Invalid density " + density + " or capacity " + capacity);
+		}
+		this.seed = seed;
+		this.minesPerChunk = (int) Math.round(density * CELLS);
+		// one cell and its 3x3 neighborhood span at most 4 chunks, which a capacity of 9 keeps loaded while the
+		// neighbors are read. A cascade can reach any number of chunks, those it leaves behind are evicted as deltas
+		this.loaded = new LinkedHashMap<Long, Chunk>(capacity * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+				if(size() <= capacity){
+					return false;
+				}
+				evict(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @return the row and column packed into one long, the row in the high 32 bits
+	 */
+	public static long cell(int row, int col) {
+		return (long) row << 32 | (col & 0xFFFFFFFFL);
+	}
+
+	public static int row(long cell) {
+		return (int) (cell >> 32);
+	}
+
+	public static int col(long cell) {
+		return (int) cell;
+	}
+
+	/**
+	 * @return the state of the cell, one of Board.COVERED, FLAGGED, REVEALED or EXPLODED
+	 */
+	public int getState(int row, int col) {
+		return chunk(row, col).states[local(row, col)];
+	}
+
+	/**
+	 * @return the number of mines surrounding the cell
+	 */
+	public int getCount(int row, int col) {
+		int count = 0;
+		for(int i = -1; i <= 1; i++) {
+			for(int j = -1; j <= 1; j++) {
+				if((i != 0 || j != 0) && isMine(row + i, col + j)){
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	boolean isMine(int row, int col) {
+		return chunk(row, col).isMine(local(row, col));
+	}
+
+	/**
+	 * @return the number of safe cells revealed
+	 */
+	public long getRevealedCount() {
+		return revealedCount;
+	}
+
+	/**
+	 * @return the number of flagged cells
+	 */
+	public long getFlagCount() {
+		return flagCount;
+	}
+
+	/**
+	 * @return true if a mine has been revealed
+	 */
+	public boolean isLost() {
+		return lost;
+	}
+
+	/**
+	 * @return the number of chunks in memory
+	 */
+	public int getLoadedChunks() {
+		return loaded.size();
+	}
+
+	/**
+	 * @return the number of evicted chunks kept as packed cell states
+	 */
+	public int getSavedChunks() {
+		return deltas.size();
+	}
+
+	/**
+	 * @return the number of chunks generated, counting every time an evicted chunk was generated again
+	 */
+	public long getGenerated() {
+		return generated;
+	}
+
+	/**
+	 * Reveals a covered cell, cascading across chunks from cells with no surrounding mines. Does nothing once the
+	 * game is lost
+	 * @return the cells whose state changed, packed by {@link #cell(int, int)}
+	 */
+	public long[] reveal(int row, int col) {
+		changedCount = 0;
+		if(!lost){
+			flood(row, col);
+		}
+		return Arrays.copyOf(changed, changedCount);
+	}
+
+	/**
+	 * Opens a cell the way a left click does: reveals it if it is covered and chords it if it is revealed
+	 * @return the cells whose state changed
+	 */
+	public long[] open(int row, int col) {
+		return getState(row, col) == Board.COVERED ? reveal(row, col) : chord(row, col);
+	}
+
+	/**
+	 * If a revealed cell has as many flagged neighbors as surrounding mines, reveals all of its covered neighbors
+	 * @return the cells whose state changed
+	 */
+	public long[] chord(int row, int col) {
+		changedCount = 0;
+		if(lost || getState(row, col) != Board.REVEALED){
+			return new long[0];
+		}
+		int flags = 0;
+		for(int i = -1; i <= 1; i++) {
+			for(int j = -1; j <= 1; j++) {
+				if(getState(row + i, col + j) == Board.FLAGGED){
+					flags++;
+				}
+			}
+		}
+		if(flags == getCount(row, col)){
+			for(int i = -1; i <= 1; i++) {
+				for(int j = -1; j <= 1; j++) {
+					flood(row + i, col + j);
+				}
+			}
+		}
+		return Arrays.copyOf(changed, changedCount);
+	}
+
+	/**
+	 * Toggles a covered cell between covered and flagged
+	 * @return true if the state of the cell changed
+	 */
+	public boolean toggleFlag(int row, int col) {
+		if(lost){
+			return false;
+		}
+		int state = getState(row, col);
+		if(state == Board.COVERED){
+			set(row, col, Board.FLAGGED);
+			flagCount++;
+		}else if(state == Board.FLAGGED){
+			set(row, col, Board.COVERED);
+			flagCount--;
+		}else{
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reveals a cell and cascades out from it with an explicit worklist, marking cells revealed as they are pushed
+	 */
+	private void flood(int row, int col) {
+		if(getState(row, col) != Board.COVERED){
+			return;
+		}
+		if(isMine(row, col)){
+			set(row, col, Board.EXPLODED);
+			lost = true;
+			addChanged(cell(row, col));
+			return;
+		}
+		set(row, col, Board.REVEALED);
+		revealedCount++;
+		addChanged(cell(row, col));
+		if(getCount(row, col) != 0){
+			return;
+		}
+		int top = 0;
+		stack[top++] = cell(row, col);
+		while(top > 0) {
+			long next = stack[--top];
+			int r = row(next), c = col(next);
+			for(int i = -1; i <= 1; i++) {
+				for(int j = -1; j <= 1; j++) {
+					// neighbors of a zero cell are never mines
+					if(getState(r + i, c + j) == Board.COVERED){
+						set(r + i, c + j, Board.REVEALED);
+						revealedCount++;
+						long neighbor = cell(r + i, c + j);
+						addChanged(neighbor);
+						if(getCount(r + i, c + j) == 0){
+							if(top == stack.length){
+								stack = Arrays.copyOf(stack, stack.length * 2);
+							}
+							stack[top++] = neighbor;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void addChanged(long cell) {
+		if(changedCount == changed.length){
+			changed = Arrays.copyOf(changed, changed.length * 2);
+		}
+		changed[changedCount++] = cell;
+	}
+
+	private void set(int row, int col, byte state) {
+		Chunk chunk = chunk(row, col);
+		int local = local(row, col);
+		if(chunk.states[local] == Board.COVERED){
+			chunk.touched++;
+		}else if(state == Board.COVERED){
+			chunk.touched--;
+		}
+		chunk.states[local] = state;
+	}
+
+	private static int local(int row, int col) {
+		return (row & MASK) << SHIFT | (col & MASK);
+	}
+
+	/**
+	 * @return the chunk holding the cell, generating or restoring it if it is not in memory
+	 */
+	private Chunk chunk(int row, int col) {
+		long key = cell(row >> SHIFT, col >> SHIFT);
+		if(last != null){
+			if(last.key == key){
+				return last;
+			}
+			// lookups served from last skip the map, so the chunk is marked used before the next one is loaded
+			loaded.get(last.key);
+		}
+		Chunk chunk = loaded.get(key);
+		if(chunk == null){
+			chunk = new Chunk(key);
+			byte[] delta = deltas.remove(key);
+			if(delta != null){
+				chunk.unpack(delta);
+			}
+			generated++;
+			loaded.put(key, chunk);
+		}
+		last = chunk;
+		return chunk;
+	}
+
+	/**
+	 * Keeps the states of a chunk leaving memory if the player changed any of its cells
+	 */
+	private void evict(Chunk chunk) {
+		if(chunk == last){
+			last = null;
+		}
+		if(chunk.touched > 0){
+			deltas.put(chunk.key, chunk.pack());
+		}
+	}
+
+	/**
+	 * The mines and cell states of one chunk
+	 */
+	private final class Chunk {
+
+		final long key; // the chunk's row and column packed like a cell
+		final long[] mines = new long[CELLS / 64]; // one bit per cell
+		final byte[] states = new byte[CELLS];
+		int touched; // cells that are not covered
+
+		/**
+		 * Places the chunk's mines with a partial Fisher-Yates shuffle seeded by the world seed and the chunk's
+		 * coordinates. Mines that land around (0, 0) are dropped
+		 */
+		Chunk(long key) {
+			this.key = key;
+			SplittableRandom random = new SplittableRandom(Simulator.mix(seed ^ Simulator.mix(key)));
+			int[] cells = new int[CELLS];
+			for(int i = 0; i < CELLS; i++) {
+				cells[i] = i;
+			}
+			int baseRow = row(key) << SHIFT, baseCol = col(key) << SHIFT;
+			for(int k = 0; k < minesPerChunk; k++) {
+				int r = k + random.nextInt(CELLS - k);
+				int cell = cells[r];
+				cells[r] = cells[k];
+				int row = baseRow + (cell >> SHIFT), col = baseCol + (cell & MASK);
+				if(Math.abs(row) > 1 || Math.abs(col) > 1){
+					mines[cell >> 6] |= 1L << cell;
+				}
+			}
+		}
+
+		boolean isMine(int local) {
+			return (mines[local >> 6] & 1L << local) != 0;
+		}
+
+		/**
+		 * @return the states of every cell, 4 cells to a byte
+		 */
+		byte[] pack() {
+			byte[] packed = new byte[CELLS / 4];
+			for(int i = 0; i < CELLS; i++) {
+				packed[i >> 2] |= states[i] << ((i & 3) * 2);
+			}
+			return packed;
+		}
+
+		void unpack(byte[] packed) {
+			for(int i = 0; i < CELLS; i++) {
+				states[i] = (byte) (packed[i >> 2] >> ((i & 3) * 2) & 3);
+				if(states[i] != Board.COVERED){
+					touched++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package minesweep;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GridLayout;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.swing.AbstractAction;
+import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+
+/**
+ * Window playing an {@link EndlessBoard}. The board is drawn through a viewport the player moves with the arrow keys
+ * or by dragging with the middle mouse button, and only the cells under the viewport are ever looked at, so the
+ * board loads chunks as they scroll into view and forgets them once they have been out of view for a while.
+ * <p>
+ * A game starts by revealing (0, 0), which is never a mine, and the score is the number of cells revealed before a
+ * mine is hit.
+ * @author Martin Wallace
+ */
+class EndlessView extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final double DENSITY = 0.18; // fraction of the cells that are mines
+	private static final int CAPACITY = 256; // chunks kept in memory, about 300KB
+	private static final int VIEW_ROWS = 24, VIEW_COLS = 40; // cells shown when the window opens
+	private static final int STEP = 4; // cells moved by each press of an arrow key
+
+	private final JButton face, revealed;
+	private final int cellWidth, cellHeight;
+	private EndlessBoard board;
+	private int top, left; // row and column of the cell in the top left corner of the viewport
+	private int dragX, dragY; // where the middle button was last seen while dragging, in cells
+
+	private EndlessView(JButton face, JButton revealed) {
+		this.face = face;
+		this.revealed = revealed;
+		ImageIcon cover = Icons.get(MineSweeperButton.COVER);
+		this.cellWidth = cover.getIconWidth();
+		this.cellHeight = cover.getIconHeight();
+		setPreferredSize(new Dimension(VIEW_COLS * cellWidth, VIEW_ROWS * cellHeight));
+		setOpaque(true);
+		setFocusable(true);
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				requestFocusInWindow();
+				int row = rowAt(e.getY()), col = colAt(e.getX());
+				if(SwingUtilities.isMiddleMouseButton(e)){
+					dragX = col;
+					dragY = row;
+				}else if(SwingUtilities.isRightMouseButton(e)){
+					if(board.toggleFlag(row, col)){
+						repaintCell(EndlessBoard.cell(row, col));
+					}
+				}else if(SwingUtilities.isLeftMouseButton(e)){
+					moved(board.open(row, col));
+				}
+			}
+		});
+		addMouseMotionListener(new MouseAdapter() {
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				if(SwingUtilities.isMiddleMouseButton(e)){
+					int row = rowAt(e.getY()), col = colAt(e.getX());
+					scroll(dragY - row, dragX - col);
+				}
+			}
+		});
+		bindKey(KeyEvent.VK_UP, -STEP, 0);
+		bindKey(KeyEvent.VK_DOWN, STEP, 0);
+		bindKey(KeyEvent.VK_LEFT, 0, -STEP);
+		bindKey(KeyEvent.VK_RIGHT, 0, STEP);
+	}
+
+	/**
+	 * Opens a window with a new endless game
+	 * @param seed - the world seed the first board is generated from, the face starts a new random world
+	 */
+	static void open(long seed) {
+		JFrame frame = new JFrame("MineSweeper - Endless");
+		JButton face = new JButton(Icons.get(MineSweeperButton.FACE_SMILE));
+		JButton revealed = new JButton();
+		JPanel top = new JPanel(new GridLayout(1, 2));
+		EndlessView view = new EndlessView(face, revealed);
+		face.addActionListener(e -> view.newGame(ThreadLocalRandom.current().nextLong()));
+		top.add(revealed);
+		top.add(face);
+		frame.setLayout(new BorderLayout());
+		frame.add(top, BorderLayout.NORTH);
+		frame.add(view, BorderLayout.CENTER);
+		frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		view.newGame(seed);
+		frame.pack();
+		frame.setLocationRelativeTo(null);
+		frame.setVisible(true);
+		view.requestFocusInWindow();
+	}
+
+	/**
+	 * Starts a new world with the viewport centered on (0, 0) and reveals (0, 0)
+	 */
+	private void newGame(long seed) {
+		board = new EndlessBoard(seed, DENSITY, CAPACITY);
+		top = -VIEW_ROWS / 2;
+		left = -VIEW_COLS / 2;
+		face.setIcon(Icons.get(MineSweeperButton.FACE_SMILE));
+		moved(board.reveal(0, 0));
+		repaint();
+	}
+
+	private void bindKey(int key, int rows, int cols) {
+		String name = "scroll" + key;
+		getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), name);
+		getActionMap().put(name, new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				scroll(rows, cols);
+			}
+		});
+	}
+
+	/**
+	 * Moves the viewport by the given number of cells
+	 */
+	private void scroll(int rows, int cols) {
+		if(rows == 0 && cols == 0){
+			return;
+		}
+		top += rows;
+		left += cols;
+		repaint();
+	}
+
+	/**
+	 * Repaints the cells changed by a move that are in view and updates the score
+	 */
+	private void moved(long[] cells) {
+		for(long cell : cells) {
+			repaintCell(cell);
+		}
+		revealed.setText(String.format("Revealed: %d", board.getRevealedCount()));
+		if(board.isLost()){
+			face.setIcon(Icons.get(MineSweeperButton.FACE_DEAD));
+			repaint(); // shows the mines left in view
+		}
+	}
+
+	private void repaintCell(long cell) {
+		int row = EndlessBoard.row(cell) - top, col = EndlessBoard.col(cell) - left;
+		if(row >= 0 && col >= 0 && row * cellHeight < getHeight() && col * cellWidth < getWidth()){
+			repaint(col * cellWidth, row * cellHeight, cellWidth, cellHeight);
+		}
+	}
+
+	private int rowAt(int y) {
+		return top + Math.floorDiv(y, cellHeight);
+	}
+
+	private int colAt(int x) {
+		return left + Math.floorDiv(x, cellWidth);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if(clip == null){
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		int firstRow = clip.y / cellHeight, lastRow = (clip.y + clip.height - 1) / cellHeight;
+		int firstCol = clip.x / cellWidth, lastCol = (clip.x + clip.width - 1) / cellWidth;
+		for(int i = firstRow; i <= lastRow; i++) {
+			for(int j = firstCol; j <= lastCol; j++) {
+				Icons.get(icon(top + i, left + j)).paintIcon(this, g, j * cellWidth, i * cellHeight);
+			}
+		}
+	}
+
+	/**
+	 * @return the state constant of the icon to show for a cell, showing the mines once the game is lost
+	 */
+	private int icon(int row, int col) {
+		switch(board.getState(row, col)) {
+			case Board.REVEALED: return board.getCount(row, col);
+			case Board.EXPLODED: return MineSweeperButton.MINE_RED;
+			case Board.FLAGGED:
+				return board.isLost() && !board.isMine(row, col) ? MineSweeperButton.MINE_MISFLAGGED : MineSweeperButton.FLAG;
+			default:
+				return board.isLost() && board.isMine(row, col) ? MineSweeperButton.MINE_GREY : MineSweeperButton.COVER;
+		}
+	}
+}
@@ -0,0 +1,466 @@
+package minesweep;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Log of every finished game for analysing how the game is played, kept column by column so a single statistic can
+ * be read over millions of games without decoding the rest. Games are gathered into batches of {@link #BATCH} in
+ * memory and each full batch is encoded and appended to the file on a background thread, so the thread playing the
+ * game never waits on the disk. Games waiting for a batch to fill are also written every {@link #FLUSH_SECONDS}, so a
+ * game that is killed loses little.
+ * <p>
+ * A log file starts with {@link #MAGIC} followed by blocks of up to {@link #BATCH} games. A block holds, as little
+ * endian ints, its length in bytes after that int, the number of games in it and the length of each column, followed
+ * by the columns in the order of {@link #COLUMNS}. The seed is kept as 8 bytes, the time as the zigzag varint of the
+ * difference from the game before it in the block and every other column as the zigzag varint of its value, so most
+ * take a byte a game. Blocks are appended under a lock on the file so games logged by several processes at once do
+ * not interleave. A block cut short by a crash is cut off before the next one is appended, and the reader stops at
+ * it if nothing was appended since.
+ * <p>
+ * Usage: {@code GameLog <file> [column]...} prints the number of games in the file and the total, mean, min and max
+ * of the given columns, all of them by default.
+ * @author Martin Wallace
+ */
+public class GameLog implements Closeable {
+
+	static final byte[] MAGIC = {'M', 'S', 'G', 'L', 1}; // first bytes of a log file, the last one is the version
+	static final int BATCH = 1024; // games written to the file at a time
+	static final int FLUSH_SECONDS = 30; // longest a game waits for its batch to fill before being written
+
+	// columns, in the order they are stored in a block
+	static final int TIME = 0, DIFFICULTY = 1, ROWS = 2, COLS = 3, MINES = 4, SEED = 5, RESULT = 6, MILLIS = 7,
+			CLICKS = 8, FLAGS = 9, CASCADES = 10, REVEALED = 11;
+	static final String[] COLUMNS = {"time", "difficulty", "rows", "cols", "mines", "seed", "result", "millis",
+			"clicks", "flags", "cascades", "revealed"};
+
+	private static final int HEADER = 4 * (2 + COLUMNS.length); // bytes in front of the columns of a block
+
+	private final Path file;
+	private final ScheduledExecutorService writer;
+	private long validLength; // bytes of the file up to the end of the last intact block, only used by the writer
+	private long[][] batch = new long[COLUMNS.length][BATCH]; // games not handed to the writer yet, column by column
+	private int size; // games in the batch
+
+	/**
+	 * @param file - the log file, created with its directory when the first batch is written
+	 */
+	GameLog(Path file) {
+		this.file = file;
+		this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "game-log");
+			thread.setDaemon(true);
+			return thread;
+		});
+		writer.scheduleWithFixedDelay(this::flush, FLUSH_SECONDS, FLUSH_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Main Method to summarise a log file
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0){
+			System.err.println("Usage: GameLog <file> [column]...");
+			System.exit(2);
+		}
+		String[] names = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : COLUMNS;
+		try(Reader reader = new Reader(Paths.get(args[0]))) {
+			System.out.printf("%d games%n", reader.count());
+			System.out.printf("%-12s %20s %14s %20s %20s%n", "column", "total", "mean", "min", "max");
+			for(String name : names) {
+				long[] summary = {0, 0, Long.MAX_VALUE, Long.MIN_VALUE}; // games, total, min, max
+				reader.scan(column(name), value -> {
+					summary[0]++;
+					summary[1] += value;
+					summary[2] = Math.min(summary[2], value);
+					summary[3] = Math.max(summary[3], value);
+				});
+				if(summary[0] > 0){
+					System.out.printf(Locale.ROOT, "%-12s %20d %14.2f %20d %20d%n", name, summary[1],
+							(double) summary[1] / summary[0], summary[2], summary[3]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the index of the column with the given name
+	 */
+	static int column(String name) {
+		for(int column = 0; column < COLUMNS.length; column++) {
+			if(COLUMNS[column].equals(name)){
+				return column;
+			}
+		}
+		throw new IllegalArgumentException("Unknown column " + name);
+	}
+
+	/**
+	 * Adds a finished game to the batch, handing the batch to the background thread once it is full
+	 */
+	synchronized void add(Game game) {
+		long[] row = {game.time, game.difficulty, game.values[MineSweeper.ROW], game.values[MineSweeper.COL],
+				game.values[MineSweeper.MINES], game.seed, game.result, game.millis, game.clicks, game.flags,
+				game.cascades, game.revealed};
+		for(int column = 0; column < row.length; column++) {
+			batch[column][size] = row[column];
+		}
+		if(++size == BATCH){
+			flush();
+		}
+	}
+
+	/**
+	 * Hands the games in the batch to the background thread to be written, without waiting for them to be
+	 */
+	synchronized void flush() {
+		if(size == 0 || writer.isShutdown()){
+			return;
+		}
+		long[][] full = batch;
+		int games = size;
+		batch = new long[COLUMNS.length][BATCH];
+		size = 0;
+		writer.execute(() -> {
+			try {
+				append(encode(full, games));
+			} catch(IOException e) {
+				System.err.println("Unable to write game log");
+				e.printStackTrace();
+			}
+		});
+	}
+
+	/**
+	 * Writes the games still in the batch and waits for every write to finish
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this) {
+			if(writer.isShutdown()){
+				return;
+			}
+			flush();
+			writer.shutdown();
+		}
+		try {
+			if(!writer.awaitTermination(10, TimeUnit.SECONDS)){
+				throw new IOException("Game log is still being written");
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Encodes a batch of games as one block
+	 * @param columns - the values of each column
+	 * @param games - the number of games in the columns
+	 */
+	static byte[] encode(long[][] columns, int games) {
+		byte[][] encoded = new byte[COLUMNS.length][];
+		int length = HEADER - 4;
+		for(int column = 0; column < COLUMNS.length; column++) {
+			long[] values = columns[column];
+			ByteBuffer out = ByteBuffer.allocate(games * (column == SEED ? 8 : 10)).order(ByteOrder.LITTLE_ENDIAN);
+			long previous = 0;
+			for(int i = 0; i < games; i++) {
+				if(column == SEED){
+					out.putLong(values[i]);
+					continue;
+				}
+				long value = column == TIME ? values[i] - previous : values[i];
+				previous = values[i];
+				for(long zigzag = value << 1 ^ value >> 63; ; zigzag >>>= 7) {
+					if((zigzag & ~0x7FL) == 0){
+						out.put((byte) zigzag);
+						break;
+					}
+					out.put((byte) (zigzag & 0x7F | 0x80));
+				}
+			}
+			encoded[column] = Arrays.copyOf(out.array(), out.position());
+			length += encoded[column].length;
+		}
+		ByteBuffer block = ByteBuffer.allocate(4 + length).order(ByteOrder.LITTLE_ENDIAN);
+		block.putInt(length).putInt(games);
+		for(byte[] column : encoded) {
+			block.putInt(column.length);
+		}
+		for(byte[] column : encoded) {
+			block.put(column);
+		}
+		return block.array();
+	}
+
+	/**
+	 * Appends a block to the log file after the last intact block, cutting off any block left torn by a crash and
+	 * writing the magic first if the file is new. Only called on the writer thread
+	 */
+	private void append(byte[] block) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		if(directory != null){
+			Files.createDirectories(directory);
+		}
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			channel.lock(); // released when the channel is closed
+			long size = channel.size();
+			if(size < validLength){
+				validLength = 0; // the file was replaced
+			}
+			if(validLength == 0 && size >= MAGIC.length){
+				ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+				read(channel, magic, 0);
+				if(!Arrays.equals(magic.array(), MAGIC)){
+					throw new IOException(file + " is not a game log");
+				}
+				validLength = MAGIC.length;
+			}
+			// skip the blocks other games appended since the last write
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			while(validLength > 0 && validLength + HEADER <= size) {
+				header.clear();
+				read(channel, header, validLength);
+				if(!intact(header, validLength, size)){
+					break;
+				}
+				validLength += 4 + header.getInt(0);
+			}
+			if(size > validLength){
+				channel.truncate(validLength);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((validLength == 0 ? MAGIC.length : 0) + block.length);
+			if(validLength == 0){
+				buffer.put(MAGIC);
+			}
+			buffer.put(block).flip();
+			long position = validLength;
+			while(buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			channel.force(false);
+			validLength = position;
+		}
+	}
+
+	/**
+	 * @param header - the header of the block at the position
+	 * @param size - the size of the file
+	 * @return true if the header is well formed and the whole block is in the file
+	 */
+	static boolean intact(ByteBuffer header, long position, long size) {
+		int length = header.getInt(0), games = header.getInt(4);
+		if(games <= 0 || games > BATCH || length < HEADER - 4 || position + 4 + length > size){
+			return false;
+		}
+		long columns = 0;
+		for(int column = 0; column < COLUMNS.length; column++) {
+			int bytes = header.getInt(8 + 4 * column);
+			if(bytes < 0){
+				return false;
+			}
+			columns += bytes;
+		}
+		return columns == length - (HEADER - 4);
+	}
+
+	private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0){
+				throw new EOFException("Game log ends in the middle of a block");
+			}
+		}
+	}
+
+	/**
+	 * What is known about one game, filled in by the front end while it is played and handed to
+	 * {@link GameLog#add(Game)} once it ends
+	 */
+	static class Game {
+
+		final long time; // when the game started in seconds since the epoch
+		final int difficulty; // index into MineSweeper.VALUES or -1 for a custom board
+		final int[] values; // rows, cols and mines
+		final long seed; // the seed the mines were placed from, 0 if they were not placed from a seed
+		int result = Replay.ABANDONED; // one of the results in Replay
+		long millis; // how long the game was played for
+		int clicks; // reveals, chords and flag toggles made on the board
+		int flags; // flags placed, including ones taken off again
+		int cascades; // moves that revealed more than one cell
+		int revealed; // safe cells revealed at the end
+
+		/**
+		 * @param values - rows, cols and mines of the board
+		 * @param seed - the seed the mines were placed from, 0 if they were not placed from a seed
+		 */
+		Game(int[] values, long seed) {
+			this.time = System.currentTimeMillis() / 1000;
+			this.values = values.clone();
+			this.seed = seed;
+			int index = -1;
+			for(int i = 0; i < MineSweeper.VALUES.length; i++) {
+				if(Arrays.equals(MineSweeper.VALUES[i], values)){
+					index = i;
+				}
+			}
+			this.difficulty = index;
+		}
+
+		/**
+		 * Counts the cells changed by a move as a cascade if there is more than one
+		 */
+		void cellsChanged(int[] cells) {
+			if(cells.length > 1){
+				cascades++;
+			}
+		}
+
+		/**
+		 * Counts a flag toggle, and a flag placed if the cell is flagged after it
+		 */
+		void flagToggled(Board board, int cell) {
+			clicks++;
+			if(board.getState(cell) == Board.FLAGGED){
+				flags++;
+			}
+		}
+
+		/**
+		 * Fills in how the game ended
+		 * @param result - one of the results in Replay
+		 * @param millis - how long the game was played for
+		 * @param revealed - safe cells revealed
+		 */
+		Game finish(int result, long millis, int revealed) {
+			this.result = result;
+			this.millis = millis;
+			this.revealed = revealed;
+			return this;
+		}
+	}
+
+	/**
+	 * Reads the columns of a log file a block at a time, reading only the bytes of the column asked for
+	 */
+	static class Reader implements Closeable {
+
+		private final FileChannel channel;
+		private final ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		private ByteBuffer data = ByteBuffer.allocate(BATCH * 10);
+
+		/**
+		 * @param file - the log file
+		 */
+		Reader(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+			read(channel, magic, 0);
+			if(!Arrays.equals(magic.array(), MAGIC)){
+				channel.close();
+				throw new IOException(file + " is not a game log");
+			}
+		}
+
+		/**
+		 * @return the number of games in the file, read from the block headers alone
+		 */
+		long count() throws IOException {
+			long games = 0;
+			long size = channel.size();
+			for(long position = MAGIC.length; readHeader(position, size); position += 4 + header.getInt(0)) {
+				games += header.getInt(4);
+			}
+			return games;
+		}
+
+		/**
+		 * Passes the value of one column for every game in the file to the action, in the order they were logged
+		 * @param column - one of the columns, such as {@link GameLog#MILLIS}
+		 */
+		void scan(int column, LongConsumer action) throws IOException {
+			if(column < 0 || column >= COLUMNS.length){
+				throw new IllegalArgumentException("Unknown column " + column);
+			}
+			long size = channel.size();
+			for(long position = MAGIC.length; readHeader(position, size); position += 4 + header.getInt(0)) {
+				int games = header.getInt(4);
+				long offset = position + HEADER;
+				for(int before = 0; before < column; before++) {
+					offset += header.getInt(8 + 4 * before);
+				}
+				int length = header.getInt(8 + 4 * column);
+				if(data.capacity() < length){
+					data = ByteBuffer.allocate(length);
+				}
+				data.clear().limit(length);
+				read(channel, data, offset);
+				decode(data.array(), length, games, column, action);
+			}
+		}
+
+		/**
+		 * Reads the header of the block at a position
+		 * @return false at the end of the file or at a block cut short
+		 */
+		private boolean readHeader(long position, long size) throws IOException {
+			if(position + HEADER > size){
+				return false;
+			}
+			header.clear();
+			read(channel, header, position);
+			return intact(header, position, size);
+		}
+
+		private static void decode(byte[] bytes, int length, int games, int column, LongConsumer action)
+				throws IOException {
+			if(column == SEED){
+				ByteBuffer seeds = ByteBuffer.wrap(bytes, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+				for(int i = 0; i < games; i++) {
+					action.accept(seeds.getLong());
+				}
+				return;
+			}
+			int pos = 0;
+			long previous = 0;
+			for(int i = 0; i < games; i++) {
+				long zigzag = 0;
+				for(int shift = 0; ; shift += 7) {
+					if(pos >= length || shift >= 64){
+						throw new IOException("Damaged column " + COLUMNS[column]);
+					}
+					byte b = bytes[pos++];
+					zigzag |= (long) (b & 0x7F) << shift;
+					if(b >= 0){
+						break;
+					}
+				}
+				long value = zigzag >>> 1 ^ -(zigzag & 1);
+				if(column == TIME){
+					value += previous;
+					previous = value;
+				}
+				action.accept(value);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
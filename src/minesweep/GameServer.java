@@ -0,0 +1,339 @@
+package minesweep;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts many headless games at once over a line based protocol, one game per connection. Each connection is served
+ * by its own thread, a virtual thread when the JVM has them (Java 21 and later) and a platform thread otherwise, so
+ * a session simply blocks on its socket between moves.
+ * <p>
+ * Requests are one line each, cells are addressed by row and column:
+ * <ul>
+ * <li>{@code NEW <beginner|intermediate|expert|RxCxM> [seed]} starts a game, answered by {@code OK <rows> <cols> <mines>}</li>
+ * <li>{@code REVEAL <row> <col>}, {@code FLAG <row> <col>} and {@code CHORD <row> <col>} make a move</li>
+ * <li>{@code STATE} sends every cell that is not covered, to resynchronize a client</li>
+ * <li>{@code QUIT} closes the connection</li>
+ * </ul>
+ * Moves are answered by a diff, {@code D <PLAYING|WON|LOST> <cell>=<state>...}, listing only the cells the move
+ * changed by index, where the state is the number of a revealed cell, {@code F} for a flag, {@code C} for a cell
+ * covered again and {@code X} for an exploded mine. Moves once the game is won or lost change nothing and are answered
+ * by an empty diff. Errors are answered by {@code ERR <message>}, including boards with more than
+ * {@link #MAX_SIDE} rows or columns, since one session must not be able to take the memory of all the others. For the
+ * same reason a request longer than {@link #MAX_LINE} characters is answered by an error and the connection closed.
+ * <p>
+ * Usage: {@code GameServer [--port P] [--platform-threads]}
+ * @author Martin Wallace
+ */
+public class GameServer implements AutoCloseable {
+
+	static final int MAX_SIDE = 1000; // most rows or columns a board may have
+	static final int MAX_LINE = 256; // most characters a request may have
+
+	private final ServerSocket socket;
+	private final ExecutorService sessions;
+	private final boolean virtual;
+	private final AtomicInteger open = new AtomicInteger();
+	private final LongAdder requests = new LongAdder();
+
+	/**
+	 * @param port - the port to listen on, 0 for any free port
+	 * @param platformThreads - true to serve sessions on platform threads even when virtual threads are available
+	 */
+	public GameServer(int port, boolean platformThreads) throws IOException {
+		this.socket = new ServerSocket(port, 4096, InetAddress.getLoopbackAddress());
+		ExecutorService executor = platformThreads ? null : virtualThreads();
+		this.virtual = executor != null;
+		this.sessions = virtual ? executor : Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(null, r, "session", 256 * 1024);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Main Method to start up the server
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = 7377;
+		boolean platformThreads = false;
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+				case "--port": port = Integer.parseInt(args[++i]); break;
+				case "--platform-threads": platformThreads = true; break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		GameServer server = new GameServer(port, platformThreads);
+		System.out.printf("Listening on %s, one %s thread per session%n", server.socket.getLocalSocketAddress(),
+				server.isVirtual() ? "virtual" : "platform");
+		server.serve();
+	}
+
+	/**
+	 * @return an executor starting a virtual thread per task, or null if the JVM has no virtual threads. Looked up
+	 * by reflection so the game still builds and runs on Java 8
+	 */
+	private static ExecutorService virtualThreads() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Accepts connections until the server is closed, starting a session for each
+	 */
+	public void serve() throws IOException {
+		while(!socket.isClosed()) {
+			Socket connection;
+			try {
+				connection = socket.accept();
+			} catch(IOException e) {
+				if(socket.isClosed()){
+					return;
+				}
+				throw e;
+			}
+			sessions.execute(() -> run(connection));
+		}
+	}
+
+	/**
+	 * Reads requests from a connection and answers each one until the client quits or disconnects
+	 */
+	private void run(Socket connection) {
+		open.incrementAndGet();
+		try(Socket s = connection;
+			BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+			Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+			s.setTcpNoDelay(true);
+			Session session = new Session();
+			StringBuilder response = new StringBuilder();
+			StringBuilder line = new StringBuilder();
+			while(readLine(in, line) && !line.toString().trim().equalsIgnoreCase("QUIT")) {
+				if(line.length() > MAX_LINE){
+					out.append("ERR requests are at most " + MAX_LINE + " characters\n");
+					out.flush();
+					break;
+				}
+				response.setLength(0);
+				session.handle(line.toString(), response);
+				requests.increment();
+				out.append(response).append('\n');
+				out.flush();
+			}
+		} catch(IOException e) {
+			// the client went away
+		} finally {
+			open.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Reads one line into {@code line}, without its terminator. Stops storing characters past {@link #MAX_LINE}, so a
+	 * line that is too long is left one character longer than the limit however long it really was
+	 * @return false if the connection ended before a line
+	 */
+	private static boolean readLine(BufferedReader in, StringBuilder line) throws IOException {
+		line.setLength(0);
+		int c;
+		while((c = in.read()) != -1 && c != '\n') {
+			if(line.length() <= MAX_LINE){
+				line.append((char) c);
+			}
+		}
+		if(line.length() > 0 && line.charAt(line.length() - 1) == '\r'){
+			line.setLength(line.length() - 1);
+		}
+		return c != -1 || line.length() > 0;
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * @return true if sessions run on virtual threads
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * @return the number of connections being served
+	 */
+	public int getOpenSessions() {
+		return open.get();
+	}
+
+	/**
+	 * @return the number of requests answered since the server started
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Stops accepting connections. Sessions already running end when their clients disconnect
+	 */
+	@Override
+	public void close() throws IOException {
+		socket.close();
+		sessions.shutdown();
+	}
+
+	/**
+	 * The game played on one connection, following the same rules as a game played on screen: the first reveal
+	 * places the mines around the cell, flags toggle and chords open the neighbors of a number with enough flags
+	 */
+	static class Session {
+
+		private Board board;
+		private int[] values;
+		private long seed;
+		private boolean started;
+
+		/**
+		 * Answers one request
+		 * @param line - the request
+		 * @param out - receives the response, without a line break
+		 */
+		void handle(String line, StringBuilder out) {
+			String[] parts = line.trim().split("\\s+");
+			try {
+				switch(parts[0].toUpperCase(Locale.ROOT)) {
+					case "NEW":
+						if(parts.length < 2){
+							throw new IllegalArgumentException("expected a difficulty");
+						}
+						int[] requested = Simulator.values(parts[1]);
+						int rows = requested[MineSweeper.ROW], cols = requested[MineSweeper.COL];
+						if(rows <= 0 || cols <= 0 || rows > MAX_SIDE || cols > MAX_SIDE){
+							throw new IllegalArgumentException("boards must have 1 to " + MAX_SIDE + " rows and columns");
+						}
+						// the first reveal keeps its whole neighborhood clear, which is 3x3 wherever the board allows it
+						int eligible = rows * cols - Math.min(rows, 3) * Math.min(cols, 3);
+						if(requested[MineSweeper.MINES] < 0 || requested[MineSweeper.MINES] > eligible){
+							throw new IllegalArgumentException("a " + rows + "x" + cols + " board holds 0 to "
+									+ eligible + " mines");
+						}
+						seed = parts.length > 2 ? Long.parseLong(parts[2]) : ThreadLocalRandom.current().nextLong();
+						values = requested;
+						board = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+						started = false;
+						out.append("OK ").append(board.getRows()).append(' ').append(board.getCols()).append(' ')
+								.append(values[MineSweeper.MINES]);
+						return;
+					case "REVEAL":
+						move(cell(parts), false, out);
+						return;
+					case "CHORD":
+						move(cell(parts), true, out);
+						return;
+					case "FLAG":
+						int cell = cell(parts);
+						boolean over = board.isLost() || board.isWon();
+						diff(started && !over && board.toggleFlag(cell) ? new int[]{cell} : new int[0], out);
+						return;
+					case "STATE":
+						requireGame();
+						int[] shown = new int[board.size()];
+						int n = 0;
+						for(int c = 0; c < board.size(); c++) {
+							if(board.getState(c) != Board.COVERED){
+								shown[n++] = c;
+							}
+						}
+						diff(Arrays.copyOf(shown, n), out);
+						return;
+					default:
+						out.append("ERR unknown request ").append(parts[0]);
+				}
+			} catch(NumberFormatException e) {
+				out.setLength(0);
+				out.append("ERR expected a number, ").append(e.getMessage());
+			} catch(IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+				out.setLength(0);
+				out.append("ERR ").append(e.getMessage());
+			}
+		}
+
+		private void requireGame() {
+			if(board == null){
+				throw new IllegalStateException("no game, send NEW first");
+			}
+		}
+
+		/**
+		 * @return the index of the cell at the row and column given in the request
+		 */
+		private int cell(String[] parts) {
+			requireGame();
+			if(parts.length < 3){
+				throw new IllegalArgumentException("expected a row and a column");
+			}
+			int row = Integer.parseInt(parts[1]), col = Integer.parseInt(parts[2]);
+			if(row < 0 || col < 0 || row >= board.getRows() || col >= board.getCols()){
+				throw new IllegalArgumentException("cell " + row + " " + col + " is outside of the board");
+			}
+			return board.index(row, col);
+		}
+
+		/**
+		 * Reveals or chords a cell, placing the mines first if this is the first reveal
+		 */
+		private void move(int cell, boolean chord, StringBuilder out) {
+			if(board.isLost() || board.isWon()){
+				diff(new int[0], out);
+				return;
+			}
+			if(!started){
+				if(chord){
+					diff(new int[0], out);
+					return;
+				}
+				board.placeMines(values[MineSweeper.MINES], cell, new SplittableRandom(seed)::nextInt);
+				board.computeCounts();
+				started = true;
+			}
+			diff(chord ? board.chord(cell) : board.open(cell), out);
+		}
+
+		/**
+		 * Writes the status of the game followed by the state of each of the cells
+		 */
+		private void diff(int[] cells, StringBuilder out) {
+			out.append("D ").append(board.isWon() ? "WON" : board.isLost() ? "LOST" : "PLAYING");
+			for(int cell : cells) {
+				out.append(' ').append(cell).append('=');
+				switch(board.getState(cell)) {
+					case Board.REVEALED: out.append(board.getCount(cell)); break;
+					case Board.FLAGGED: out.append('F'); break;
+					case Board.EXPLODED: out.append('X'); break;
+					default: out.append('C'); break;
+				}
+			}
+		}
+	}
+}
@@ -1,152 +1,521 @@
 package minesweep;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
 
 /**
- * Score manager class for reading, writing and comparing high scores for all of the difficulties of the MineSweeper game to a simple text file
+ * Score manager class for reading, writing and comparing high scores for all of the difficulties of the MineSweeper game.
+ * <p>
+ * Every winning run is kept in memory in a {@link Leaderboard} for its board size, which is the only copy ever read
+ * after startup, and each new run is appended to the file as one record ending in a checksum. A record cut short by
+ * a crash fails its checksum and is dropped on the next start. A file with damaged records is compacted by writing
+ * the runs to a temporary file and renaming it over the old one.
+ * <p>
+ * Several games can share the file. Every read and write holds a lock on a separate {@code .lock} file, and before
+ * appending a run the records other games added since the last read are merged in, starting from where that read
+ * ended. {@link #startWatching()} picks up their runs as soon as they are written.
+ * <p>
+ * Scores are times in milliseconds. Files in the old format of fifteen {@code name::score} lines and files of the
+ * first record format, which both kept whole seconds, are read once and rewritten in the current one.
  * @author Martin Wallace
  */
-public class HighScoreIO {
-	
-	public Score[][] scores; // array of inner class Score. 
-	private static final String path = "resources/highscores.txt";  // path to highscore file
-	
+public class HighScoreIO implements Closeable {
+
+	static final int TOP = 5; // scores shown for each board size
+	private static final String DEFAULT_PATH = "resources/highscores.txt";  // path to highscore file
+	private static final String HEADER = "#minesweep-scores 2\n"; // first line of files in the record format
+	private static final String SECONDS_HEADER = "#minesweep-scores 1\n"; // same records with scores in whole seconds
+
+	// file locks are held by the whole process, so games in the same process also take turns through these
+	private static final Map<Path, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+	private final Path path;
+	private final Path lockPath; // locked while the high score file is read or written
+	private final ReentrantLock processLock;
+	private final Map<String, Leaderboard> scores = new HashMap<>(); // every run for each board size
+	private long validLength; // bytes of the file up to the end of the last intact record read
+	private Object fileKey; // identity of the file read, changes when another game rewrites it
+	private FileChannel lockChannel; // open while the lock is held, closing it releases the lock
+	private WatchService watcher;
 
 	public HighScoreIO() {
-		this.scores = new Score[3][5];
+		this(DEFAULT_PATH);
+	}
+
+	/**
+	 * @param path - path to the high score file to use instead of the default one
+	 */
+	HighScoreIO(String path) {
+		this.path = Paths.get(path).toAbsolutePath();
+		this.lockPath = Paths.get(this.path + ".lock");
+		this.processLock = PROCESS_LOCKS.computeIfAbsent(this.path, p -> new ReentrantLock());
 		readHighScores();
 	}
-	
 
 	/**
-	 * Returns a formatted String representing the top 5 highscores for a given difficulty 
-	 * @param difficulty - The difficulty being requested. 0 for Beginner. 1 for Intermediate. 2 for Advanced 
-	 * @return - formatted String to be displayed when high scores requested 
+	 * Returns a formatted String representing the top 5 highscores for a given difficulty
+	 * @param difficulty - The difficulty being requested. 0 for Beginner. 1 for Intermediate. 2 for Advanced
+	 * @return - formatted String to be displayed when high scores requested
 	 */
 	public String getDifficultyInfo(int difficulty){
-		String ret = "";
-		for(int i = 0; i < scores[difficulty].length; i++){
-			ret += (i+1) + ") " + scores[difficulty][i].name + ": " + scores[difficulty][i].score + " seconds \n";
-		}
-		return ret;
+		return getInfo(MineSweeper.VALUES[difficulty]);
+	}
+
+	/**
+	 * @param values - rows, cols and mines of the board
+	 * @return formatted String of the best scores for a board size
+	 */
+	public String getInfo(int[] values) {
+		return getPage(values, 0, TOP);
+	}
+
+	/**
+	 * @param values - rows, cols and mines of the board
+	 * @param from - 0 based rank of the first run shown
+	 * @param count - the most runs shown
+	 * @return formatted String of a page of the runs for a board size
+	 */
+	public synchronized String getPage(int[] values, int from, int count) {
+		return leaderboard(values).appendPage(new StringBuilder(), from, count).toString();
+	}
+
+	/**
+	 * @param values - rows, cols and mines of the board
+	 * @param time - the score attained in milliseconds
+	 * @return formatted String of the rank of a run among every run for its board size
+	 */
+	public synchronized String getRankInfo(int[] values, int time) {
+		Leaderboard runs = leaderboard(values);
+		return String.format("Rank %d of %d, faster than %.1f%% of runs", runs.rank(time), runs.size(),
+				runs.percentile(time));
+	}
+
+	/**
+	 * @param values - rows, cols and mines of the board
+	 * @return the runs recorded for a board size
+	 */
+	public synchronized Leaderboard leaderboard(int[] values) {
+		Leaderboard runs = scores.get(NoGuessGenerator.key(values));
+		return runs != null ? runs : new Leaderboard();
+	}
+
+	public void addScore(int difficulty, int time, String name){
+		addScore(MineSweeper.VALUES[difficulty], time, name);
 	}
-	
+
 	/**
-	 * Reads the highscores off the highscore file and stores then in the Score[] scores
+	 * Records a run for a board size and appends it to the file
+	 * @param values - rows, cols and mines of the board
+	 * @param time - the score attained in milliseconds
+	 * @param name - the name of the player, null or empty if none was given
 	 */
-	private void readHighScores() {
-		File file = new File(path);
-		if(!file.exists() && !file.isDirectory()){
+	public synchronized void addScore(int[] values, int time, String name) {
+		Score score = new Score(NoGuessGenerator.key(values), name == null ? "" : name, time);
+		long start = Metrics.start();
+		boolean inserted = false;
+		try {
+			lock();
 			try {
-				boolean success = file.createNewFile();
-				if(!success){
-					throw new RuntimeException("Unable to create high score file");
-				}
-			}catch(IOException e){
-				e.printStackTrace();
-				throw new RuntimeException("Unable to find or create high score file");
+				sync();
+				insert(score);
+				inserted = true;
+				append(score);
+			} finally {
+				unlock();
 			}
+			Metrics.SCORES_WRITE.recordSince(start);
+		} catch(IOException e) {
+			if(!inserted){
+				insert(score); // the run is still shown for as long as the game runs
+			}
+			System.err.println("Unable to save high score");
+			e.printStackTrace();
 		}
-		Scanner fScan;
+	}
+
+	/**
+	 * Check to see if a given score qualifies to make the high score list.
+	 * @param difficulty - the difficulty that was played when score was attained
+	 * @param time - the score attained in milliseconds
+	 * @return - boolean value representing if the score was good enough to make the high score list
+	 */
+	public boolean isHighScore(int difficulty, int time) {
+		return isHighScore(MineSweeper.VALUES[difficulty], time);
+	}
+
+	/**
+	 * @param values - rows, cols and mines of the board
+	 * @param time - the score attained in milliseconds
+	 * @return true if the score would make the high score list for the board size
+	 */
+	public synchronized boolean isHighScore(int[] values, int time) {
+		return leaderboard(values).countFaster(time) < TOP;
+	}
+
+	/**
+	 * Reads the high score file into memory, creating it if missing and converting it if in the old format
+	 */
+	private synchronized void readHighScores() {
+		long start = Metrics.start();
 		try {
-			fScan= new Scanner(file);
-		} catch (FileNotFoundException e) {
+			lock();
+			try {
+				sync();
+			} finally {
+				unlock();
+			}
+			Metrics.SCORES_READ.recordSince(start);
+		} catch(IOException e) {
+			e.printStackTrace();
 			throw new RuntimeException("Unable to load high score file");
 		}
-		
-		for(int i = 0; i < 3; i++){
-			for(int j = 0; j < 5; j++){
-				String line;
-				try {
-					line = fScan.nextLine();
-				}catch (NoSuchElementException e){
-					line = "default::1000";
+	}
+
+	/**
+	 * Reads the records written since the last read. Reads the whole file again if another game replaced it.
+	 * Must hold the lock
+	 */
+	private void sync() throws IOException {
+		if(!Files.exists(path)){
+			scores.clear();
+			compact();
+			return;
+		}
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		Object key = attributes.fileKey();
+		boolean replaced = validLength == 0 || attributes.size() < validLength || (key != null && !key.equals(fileKey));
+		if(!replaced && attributes.size() == validLength){
+			return;
+		}
+		long from = replaced ? 0 : validLength;
+		byte[] data;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.wrap(data = new byte[(int) (channel.size() - from)]);
+			while(buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0) {
+				// read until full
+			}
+		}
+		fileKey = key;
+		int start = 0;
+		if(replaced){
+			scores.clear();
+			byte[] header = HEADER.getBytes(StandardCharsets.UTF_8);
+			if(!startsWith(data, header)){
+				if(startsWith(data, SECONDS_HEADER.getBytes(StandardCharsets.UTF_8))){
+					readSeconds(new String(data, StandardCharsets.UTF_8));
+				}else{
+					readLegacy(new String(data, StandardCharsets.UTF_8));
 				}
-				String[]parts = line.split("::");
-				scores[i][j] = new Score(parts[0], Integer.parseInt(parts[1]));
+				compact();
+				return;
 			}
+			start = header.length;
+			validLength = start;
+		}
+		boolean corrupt = false;
+		for(int end = start; end < data.length; end++) {
+			if(data[end] != '\n'){
+				continue;
+			}
+			Score score = Score.parse(new String(data, start, end - start, StandardCharsets.UTF_8));
+			if(score != null){
+				insert(score);
+			}else{
+				corrupt = true;
+			}
+			start = end + 1;
+			validLength = from + start;
+		}
+		// a bad record in the middle is dropped by rewriting the file, a torn one at the end is cut off on the next append
+		if(corrupt){
+			compact();
 		}
-		fScan.close();
 	}
-	
-	public void addScore(int difficulty, int time, String name){
-		Score temp1 = null;
-		Score temp2 = null;
-		for(int i = 0; i < 5; i++){
-			if(temp1 != null){
-				temp2 = scores[difficulty][i];
-				scores[difficulty][i] = temp1;
-				temp1 = temp2;
+
+	/**
+	 * Reads the runs other games added as soon as they are written, on a background thread, until closed
+	 */
+	public synchronized void startWatching() throws IOException {
+		if(watcher != null){
+			return;
+		}
+		watcher = path.getFileSystem().newWatchService();
+		path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		WatchService service = watcher;
+		Thread thread = new Thread(() -> {
+			try {
+				while(true) {
+					WatchKey watchKey = service.take();
+					boolean changed = false;
+					for(WatchEvent<?> event : watchKey.pollEvents()) {
+						changed |= path.getFileName().equals(event.context());
+					}
+					watchKey.reset();
+					if(changed){
+						try {
+							readHighScores();
+						} catch(RuntimeException e) {
+							// keep watching, the next change may well be readable
+							System.err.println("Unable to read high scores written by another game");
+							e.printStackTrace();
+						}
+					}
+				}
+			} catch(InterruptedException | ClosedWatchServiceException e) {
+				// closed
+			}
+		}, "high-score-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching the file for runs added by other games
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(watcher != null){
+			watcher.close();
+			watcher = null;
+		}
+	}
+
+	/**
+	 * Takes the lock of this process and then of the lock file, waiting for other games to release it
+	 */
+	private void lock() throws IOException {
+		processLock.lock();
+		try {
+			Files.createDirectories(path.getParent());
+			lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			lockChannel.lock();
+		} catch(IOException e) {
+			unlock();
+			throw e;
+		}
+	}
+
+	private void unlock() throws IOException {
+		try {
+			if(lockChannel != null){
+				lockChannel.close();
+				lockChannel = null;
+			}
+		} finally {
+			processLock.unlock();
+		}
+	}
+
+	/**
+	 * Reads scores in the old format of five name::score lines for each of the three difficulties, in whole seconds
+	 */
+	private void readLegacy(String text) {
+		String[] lines = text.split("\r?\n");
+		for(int i = 0; i < lines.length && i < 3 * TOP; i++){
+			int split = lines[i].lastIndexOf("::");
+			if(split < 0){
 				continue;
 			}
-			if(time < scores[difficulty][i].score){
-				temp1 = scores[difficulty][i];
-				scores[difficulty][i] = new Score(name, time);
+			String name = lines[i].substring(0, split);
+			int score;
+			try {
+				score = Integer.parseInt(lines[i].substring(split + 2).trim());
+			} catch(NumberFormatException e) {
+				continue; // a damaged line loses only its own run
+			}
+			if(name.equals("default") && score == 1000){
+				continue; // placeholder for an empty slot
 			}
+			insert(new Score(NoGuessGenerator.key(MineSweeper.VALUES[i / TOP]), name, score * 1000));
 		}
-		rewriteFile();
 	}
-	
+
 	/**
-	 * Check to see if a given score qualifies to make the high score list. 
-	 * @param difficulty - the difficulty that was played when score was attained
-	 * @param time - the score attained 
-	 * @return - boolean value representing if the score was good enough to make the high score list 
+	 * Reads records of the first record format, which kept scores in whole seconds. Damaged records are dropped
 	 */
-	public boolean isHighScore(int difficulty, int time) {
-		for(Score s : scores[difficulty]){
-			if( time < s.score){
-				return true;
+	private void readSeconds(String text) {
+		String[] lines = text.split("\n");
+		for(int i = 1; i < lines.length; i++){
+			Score score = Score.parse(lines[i]);
+			if(score != null){
+				insert(new Score(score.key, score.name, score.score * 1000));
 			}
 		}
-		return false;
 	}
-	
+
+	private void insert(Score score) {
+		scores.computeIfAbsent(score.key, k -> new Leaderboard()).add(score.score, score.name);
+	}
+
 	/**
-	 * Class to store the high scores 
+	 * Appends one record to the file, cutting off any torn record left at the end first. Must hold the lock.
+	 * Package-private so {@code HighScoreStress} can make it fail
 	 */
-	private class Score{
-		
-		String name; 
-		int score;
-		Score(String name, int score){
-			this.score = score; 
-			this.name = name;
+	void append(Score score) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(score.toString().getBytes(StandardCharsets.UTF_8));
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			if(channel.size() > validLength){
+				channel.truncate(validLength);
+			}
+			channel.position(validLength);
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+			validLength = channel.position();
 		}
-		
-		public String toString(){
-			return this.name + "::" + this.score;
+	}
+
+	/**
+	 * Writes every run to a temporary file and renames it over the high score file. Must hold the lock
+	 */
+	private void compact() throws IOException {
+		StringBuilder text = new StringBuilder(HEADER);
+		for(Map.Entry<String, Leaderboard> entry : scores.entrySet()) {
+			Leaderboard runs = entry.getValue();
+			for(int rank = 0; rank < runs.size(); rank++) {
+				text.append(new Score(entry.getKey(), runs.getName(rank), runs.getTime(rank)));
+			}
+		}
+		byte[] data = text.toString().getBytes(StandardCharsets.UTF_8);
+		Path dir = path.getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		validLength = data.length;
+		fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+	}
+
+	private static boolean startsWith(byte[] data, byte[] prefix) {
+		if(data.length < prefix.length){
+			return false;
+		}
+		for(int i = 0; i < prefix.length; i++){
+			if(data[i] != prefix[i]){
+				return false;
+			}
 		}
+		return true;
 	}
-	
+
 	/**
-	 * Rewrites the data to the file with the new scores in place 
+	 * Class to store the high scores. Written to the file as one line of board size, score, name and a checksum
+	 * of the rest, separated by spaces. Names are escaped so they never contain a space or line break
 	 */
-	private void rewriteFile( ){
-		PrintWriter pw = null;
-		File file = new File(path);
-		
-		try{
-			pw = new PrintWriter(file);
-		}catch(FileNotFoundException e) {
-			System.err.println("File not found for HighScore");
-			e.printStackTrace();
+	static class Score{
+
+		final String key; // board size the score was attained on
+		final String name;
+		final int score; // milliseconds
+
+		Score(String key, String name, int score){
+			this.key = key;
+			this.score = score;
+			this.name = name;
 		}
-		
-		if(pw != null) {
-			for (int i = 0; i < 3; i++) {
-				for (Score s : scores[i]) {
-					pw.write(s.toString() + "\n");
+
+		/**
+		 * @return the score written on a line, or null if the line is damaged
+		 */
+		static Score parse(String line) {
+			String[] parts = line.split(" ");
+			if(parts.length != 4){
+				return null;
+			}
+			String body = parts[0] + " " + parts[1] + " " + parts[2];
+			try {
+				if(Long.parseLong(parts[3], 16) != checksum(body)){
+					return null;
+				}
+				return new Score(parts[0], unescape(parts[2]), Integer.parseInt(parts[1]));
+			} catch(NumberFormatException e) {
+				return null;
+			}
+		}
+
+		public String toString(){
+			String body = key + " " + score + " " + escape(name);
+			return body + " " + Long.toHexString(checksum(body)) + "\n";
+		}
+
+		private static long checksum(String body) {
+			CRC32 crc = new CRC32();
+			crc.update(body.getBytes(StandardCharsets.UTF_8));
+			return crc.getValue();
+		}
+
+		private static String escape(String name) {
+			StringBuilder escaped = new StringBuilder(name.length());
+			for(int i = 0; i < name.length(); i++){
+				char c = name.charAt(i);
+				switch(c) {
+					case '\\': escaped.append("\\\\"); break;
+					case ' ': escaped.append("\\s"); break;
+					case '\n': escaped.append("\\n"); break;
+					case '\r': escaped.append("\\r"); break;
+					case '\t': escaped.append("\\t"); break;
+					default: escaped.append(c);
+				}
+			}
+			// an empty name would leave two spaces in a row
+			return escaped.length() == 0 ? "\\0" : escaped.toString();
+		}
+
+		private static String unescape(String name) {
+			if(name.equals("\\0")){
+				return "";
+			}
+			StringBuilder plain = new StringBuilder(name.length());
+			for(int i = 0; i < name.length(); i++){
+				char c = name.charAt(i);
+				if(c != '\\' || i + 1 == name.length()){
+					plain.append(c);
+					continue;
+				}
+				switch(name.charAt(++i)) {
+					case 's': plain.append(' '); break;
+					case 'n': plain.append('\n'); break;
+					case 'r': plain.append('\r'); break;
+					case 't': plain.append('\t'); break;
+					default: plain.append(name.charAt(i));
 				}
 			}
-			pw.flush();
-			pw.close();
+			return plain.toString();
 		}
-		this.readHighScores();
 	}
 }
@@ -0,0 +1,62 @@
+package minesweep;
+
+import java.awt.Color;
+import java.awt.MediaTracker;
+
+import javax.swing.ImageIcon;
+
+/**
+ * Registry of the icons used by the game. Every image in {@link MineSweeperButton#ICON_PATHS} is decoded once when
+ * this class is first used and the same instances are handed out for every button and face change after that.
+ * @author Martin Wallace
+ */
+final class Icons {
+
+	private static int loadCount; // number of images decoded from disk since startup
+	private static final ImageIcon[] ICONS = loadAll();
+	private static final Color[] HEAT = heatColors(); // translucent shades for each percent of mine probability
+
+	private Icons() { }
+
+	/**
+	 * @param state - one of the state constants in MineSweeperButton
+	 * @return the shared icon for the state. Must not be modified
+	 */
+	static ImageIcon get(int state) {
+		return ICONS[state];
+	}
+
+	/**
+	 * @param probability - the probability a cell is a mine
+	 * @return the translucent shade drawn over a covered cell with that probability, green for safe and red for a mine
+	 */
+	static Color heat(double probability) {
+		return HEAT[(int) Math.round(Math.max(0, Math.min(1, probability)) * 100)];
+	}
+
+	/**
+	 * @return the number of images that have been decoded from disk since startup, leaving out any that failed
+	 */
+	static int getLoadCount() {
+		return loadCount;
+	}
+
+	private static ImageIcon[] loadAll() {
+		ImageIcon[] icons = new ImageIcon[MineSweeperButton.ICON_PATHS.length];
+		for(int i = 0; i < icons.length; i++) {
+			icons[i] = new ImageIcon(MineSweeperButton.ICON_PATHS[i]);
+			if(icons[i].getImageLoadStatus() == MediaTracker.COMPLETE){
+				loadCount++; // a missing or broken file gives an empty icon, which is not counted
+			}
+		}
+		return icons;
+	}
+
+	private static Color[] heatColors() {
+		Color[] colors = new Color[101];
+		for(int i = 0; i < colors.length; i++) {
+			colors[i] = new Color(Math.min(255, i * 510 / 100), Math.min(255, (100 - i) * 510 / 100), 0, 120);
+		}
+		return colors;
+	}
+}
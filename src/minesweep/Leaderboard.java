@@ -0,0 +1,210 @@
+package minesweep;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Every run recorded for one board size, sorted from fastest to slowest. Kept as a treap whose nodes live in
+ * parallel arrays, each node knowing the size of its subtree, so inserting a run and finding the rank of a time or
+ * the run at a rank take O(log n) on average.
+ * <p>
+ * Nodes are sorted by a key of the time in the high 32 bits and the order the run was added in the low 32 bits, so
+ * runs with equal times rank in the order they were played. Times are in milliseconds.
+ * @author Martin Wallace
+ */
+public class Leaderboard {
+
+	private static final int NIL = 0; // index of the empty node, node 0 is never used
+
+	private long[] keys = new long[16];
+	private int[] left = new int[16], right = new int[16], sizes = new int[16], priorities = new int[16];
+	private String[] names = new String[16];
+	private int nodes = 1; // next free node
+	private int root = NIL;
+	private int sequence; // order of the next run added
+	private final SplittableRandom random = new SplittableRandom(0x5DEECE66DL);
+
+	/**
+	 * Adds a run
+	 * @param time - the score attained
+	 * @param name - the name of the player
+	 * @return the 0 based rank of the run
+	 */
+	public int add(int time, String name) {
+		if(nodes == keys.length){
+			grow();
+		}
+		int node = nodes++;
+		keys[node] = key(time, sequence++);
+		names[node] = name;
+		priorities[node] = random.nextInt();
+		sizes[node] = 1;
+		left[node] = right[node] = NIL;
+		int rank = countBelow(keys[node]);
+		split(root, keys[node]);
+		root = merge(merge(splitLeft, node), splitRight);
+		return rank;
+	}
+
+	/**
+	 * @return the number of runs recorded
+	 */
+	public int size() {
+		return sizes[root];
+	}
+
+	/**
+	 * @return the 0 based rank a run with the given time would take, after every run at least as fast
+	 */
+	public int rank(int time) {
+		return countBelow(((long) time + 1) << 32);
+	}
+
+	/**
+	 * @return the number of runs strictly faster than the given time
+	 */
+	public int countFaster(int time) {
+		return countBelow(key(time, 0));
+	}
+
+	/**
+	 * @return the percentage of recorded runs slower than the given time, 100 when there are none
+	 */
+	public double percentile(int time) {
+		int size = size();
+		return size == 0 ? 100 : 100.0 * (size - rank(time)) / size;
+	}
+
+	/**
+	 * @return the time of the run at a rank
+	 */
+	public int getTime(int rank) {
+		return (int) (keys[select(rank)] >> 32);
+	}
+
+	/**
+	 * @return the name of the player of the run at a rank
+	 */
+	public String getName(int rank) {
+		return names[select(rank)];
+	}
+
+	/**
+	 * Appends a numbered list of the runs from one rank up to count runs
+	 * @param out - the builder to append to
+	 * @param from - 0 based rank of the first run
+	 * @param count - the most runs to list
+	 * @return the builder
+	 */
+	public StringBuilder appendPage(StringBuilder out, int from, int count) {
+		int to = Math.min(size(), from + count);
+		for(int rank = from; rank < to; rank++) {
+			int node = select(rank);
+			out.append(rank + 1).append(") ").append(names[node]).append(": ").append(seconds(keys[node] >> 32))
+					.append(" seconds \n");
+		}
+		return out;
+	}
+
+	/**
+	 * @return a time in milliseconds written as seconds with three decimals
+	 */
+	static String seconds(long millis) {
+		return String.format(Locale.ROOT, "%d.%03d", millis / 1000, millis % 1000);
+	}
+
+	private static long key(int time, int sequence) {
+		return ((long) time << 32) | (sequence & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return the number of nodes with a key below the given one
+	 */
+	private int countBelow(long key) {
+		int count = 0;
+		for(int node = root; node != NIL; ) {
+			if(keys[node] < key){
+				count += sizes[left[node]] + 1;
+				node = right[node];
+			}else{
+				node = left[node];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the node at a 0 based rank
+	 */
+	private int select(int rank) {
+		if(rank < 0 || rank >= size()){
+			throw new IndexOutOfBoundsException("Rank " + rank + " of " + size());
+		}
+		int node = root;
+		while(true) {
+			int below = sizes[left[node]];
+			if(rank < below){
+				node = left[node];
+			}else if(rank == below){
+				return node;
+			}else{
+				rank -= below + 1;
+				node = right[node];
+			}
+		}
+	}
+
+	private int splitLeft, splitRight; // results of the last split
+
+	/**
+	 * Splits a subtree into the nodes with keys below the given one and the rest
+	 */
+	private void split(int node, long key) {
+		if(node == NIL){
+			splitLeft = splitRight = NIL;
+			return;
+		}
+		if(keys[node] < key){
+			split(right[node], key);
+			right[node] = splitLeft;
+			splitLeft = node;
+		}else{
+			split(left[node], key);
+			left[node] = splitRight;
+			splitRight = node;
+		}
+		update(node);
+	}
+
+	/**
+	 * Joins two subtrees where every key in the first is below every key in the second
+	 */
+	private int merge(int a, int b) {
+		if(a == NIL || b == NIL){
+			return a == NIL ? b : a;
+		}
+		if(priorities[a] > priorities[b]){
+			right[a] = merge(right[a], b);
+			update(a);
+			return a;
+		}
+		left[b] = merge(a, left[b]);
+		update(b);
+		return b;
+	}
+
+	private void update(int node) {
+		sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+	}
+
+	private void grow() {
+		int capacity = keys.length * 2;
+		keys = Arrays.copyOf(keys, capacity);
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		sizes = Arrays.copyOf(sizes, capacity);
+		priorities = Arrays.copyOf(priorities, capacity);
+		names = Arrays.copyOf(names, capacity);
+	}
+}
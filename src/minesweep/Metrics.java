@@ -0,0 +1,255 @@
+package minesweep;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process registry of counters and histograms for the hot paths of the game, turned on with
+ * {@code -Dminesweep.metrics=true}. Every value recorded in a histogram is also committed as a JDK Flight Recorder
+ * event named {@code minesweep.<histogram>} when the JVM has JFR, so a recording started with
+ * {@code -XX:StartFlightRecording} shows them next to the JVM's own events.
+ * <p>
+ * Call sites check {@link #ENABLED} before measuring anything. It is a constant, so when metrics are off the
+ * checks are folded away by the JIT and cost nothing. {@code -Dminesweep.metrics.dump=<seconds>} prints every metric
+ * to stderr periodically, and they are always printed once more when the game exits.
+ * <p>
+ * JFR's event classes are not part of Java 8, which the game is built for, so events are defined at runtime through
+ * {@code jdk.jfr.EventFactory} by reflection and are simply left out on JVMs without it.
+ * @author Martin Wallace
+ */
+public final class Metrics {
+
+	static final boolean ENABLED = Boolean.getBoolean("minesweep.metrics");
+	private static final long DUMP_SECONDS = Long.getLong("minesweep.metrics.dump", 0);
+
+	private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+	private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+	static {
+		if(ENABLED){
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(dump()), "metrics-dump"));
+			if(DUMP_SECONDS > 0){
+				ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+					Thread thread = new Thread(r, "metrics-dump");
+					thread.setDaemon(true);
+					return thread;
+				});
+				dumper.scheduleAtFixedRate(() -> System.err.print(dump()), DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	// Metrics recorded by the game
+	static final Histogram GENERATE = histogram("board.generate", true, "Time to place the mines for the first click");
+	static final Counter REJECTED = counter("board.rejected", "No-guess candidate boards thrown away, in the pool as well");
+	static final Histogram COUNTS = histogram("board.counts", true, "Time to compute the neighbor counts");
+	static final Histogram CASCADE = histogram("move.cascade", false, "Cells revealed by a move that cascaded");
+	static final Histogram PAINT = histogram("move.paint", true, "Time from a click until its cells are painted");
+	static final Histogram TICK = histogram("clock.tick", true, "Time spent updating the clock once a second");
+	static final Histogram SCORES_READ = histogram("scores.read", true, "Time to read the high score file");
+	static final Histogram SCORES_WRITE = histogram("scores.write", true, "Time to append a run to the high score file");
+
+	private Metrics() { }
+
+	/**
+	 * @param name - the name the counter is listed under
+	 * @param description - what is counted
+	 * @return the counter registered under the name, created if missing
+	 */
+	static Counter counter(String name, String description) {
+		return COUNTERS.computeIfAbsent(name, n -> new Counter(description));
+	}
+
+	/**
+	 * @param name - the name the histogram is listed under and the JFR event is named after
+	 * @param nanos - true if the values are durations in nanoseconds
+	 * @param description - what is measured
+	 * @return the histogram registered under the name, created if missing
+	 */
+	static Histogram histogram(String name, boolean nanos, String description) {
+		return HISTOGRAMS.computeIfAbsent(name, n -> new Histogram(n, nanos, description));
+	}
+
+	/**
+	 * @return the start time to pass to {@link Histogram#recordSince(long)}, 0 when metrics are off
+	 */
+	static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * @return every metric formatted one per line
+	 */
+	static String dump() {
+		StringBuilder out = new StringBuilder("metrics:\n");
+		for(Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+			out.append(String.format(Locale.ROOT, "  %-16s %12d%n", entry.getKey(), entry.getValue().get()));
+		}
+		for(Map.Entry<String, Histogram> entry : HISTOGRAMS.entrySet()) {
+			out.append(String.format(Locale.ROOT, "  %-16s %s%n", entry.getKey(), entry.getValue()));
+		}
+		return out.toString();
+	}
+
+	/**
+	 * A count that only goes up
+	 */
+	static final class Counter {
+
+		final String description;
+		private final LongAdder count = new LongAdder();
+
+		private Counter(String description) {
+			this.description = description;
+		}
+
+		void add(long n) {
+			if(ENABLED){
+				count.add(n);
+			}
+		}
+
+		long get() {
+			return count.sum();
+		}
+	}
+
+	/**
+	 * Distribution of recorded values in power of two buckets, so percentiles are known to within a factor of two
+	 * and recording never allocates or locks
+	 */
+	static final class Histogram {
+
+		final String description;
+		private final boolean nanos;
+		private final AtomicLongArray buckets = new AtomicLongArray(64); // bucket b holds values below 2^b
+		private final LongAdder count = new LongAdder(), sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+		private final Flight flight;
+
+		private Histogram(String name, boolean nanos, String description) {
+			this.description = description;
+			this.nanos = nanos;
+			this.flight = ENABLED ? Flight.create(name, nanos, description) : null;
+		}
+
+		/**
+		 * Records the time since a start from {@link Metrics#start()}
+		 */
+		void recordSince(long start) {
+			if(ENABLED){
+				record(System.nanoTime() - start);
+			}
+		}
+
+		void record(long value) {
+			if(!ENABLED){
+				return;
+			}
+			value = Math.max(value, 0);
+			buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+			count.increment();
+			sum.add(value);
+			long previous;
+			while(value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+				// retry
+			}
+			if(flight != null){
+				flight.commit(value);
+			}
+		}
+
+		/**
+		 * @return the upper bound of the bucket holding the given fraction of the values
+		 */
+		long percentile(double fraction) {
+			long total = count.sum(), seen = 0;
+			for(int b = 0; b < 64; b++) {
+				seen += buckets.get(b);
+				if(seen > 0 && seen >= total * fraction){
+					return b == 0 ? 0 : Math.min((1L << b) - 1, max.get());
+				}
+			}
+			return max.get();
+		}
+
+		@Override
+		public String toString() {
+			long n = count.sum();
+			double scale = nanos ? 1e6 : 1;
+			String unit = nanos ? " ms" : "";
+			return String.format(Locale.ROOT, "%12d  mean %.3f%s  p50 <= %.3f%s  p99 <= %.3f%s  max %.3f%s", n,
+					n == 0 ? 0 : sum.sum() / scale / n, unit, percentile(0.5) / scale, unit, percentile(0.99) / scale,
+					unit, max.get() / scale, unit);
+		}
+	}
+
+	/**
+	 * A JFR event type defined at runtime with a single value field, or nothing on JVMs without JFR
+	 */
+	private static final class Flight {
+
+		private final Object factory;
+		private final Method newEvent, set, commit;
+
+		private Flight(Object factory, Method newEvent, Method set, Method commit) {
+			this.factory = factory;
+			this.newEvent = newEvent;
+			this.set = set;
+			this.commit = commit;
+		}
+
+		/**
+		 * @return the event type, or null if JFR is not available
+		 */
+		static Flight create(String name, boolean nanos, String description) {
+			try {
+				Class<?> element = Class.forName("jdk.jfr.AnnotationElement");
+				Constructor<?> annotation = element.getConstructor(Class.class, Object.class);
+				Class<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor");
+				List<Object> eventAnnotations = new ArrayList<>(Arrays.asList(
+						annotation.newInstance(Class.forName("jdk.jfr.Name"), "minesweep." + name),
+						annotation.newInstance(Class.forName("jdk.jfr.Label"), name),
+						annotation.newInstance(Class.forName("jdk.jfr.Description"), description),
+						annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[]{"MineSweeper"})));
+				List<Object> fieldAnnotations = new ArrayList<>();
+				fieldAnnotations.add(annotation.newInstance(Class.forName("jdk.jfr.Label"), nanos ? "Duration" : "Value"));
+				if(nanos){
+					fieldAnnotations.add(annotation.newInstance(Class.forName("jdk.jfr.Timespan"), "NANOSECONDS"));
+				}
+				Object field = descriptor.getConstructor(Class.class, String.class, List.class)
+						.newInstance(long.class, "value", fieldAnnotations);
+				Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+				Object factory = factoryClass.getMethod("create", List.class, List.class)
+						.invoke(null, eventAnnotations, Arrays.asList(field));
+				Class<?> event = Class.forName("jdk.jfr.Event");
+				return new Flight(factory, factoryClass.getMethod("newEvent"), event.getMethod("set", int.class, Object.class),
+						event.getMethod("commit"));
+			} catch(ReflectiveOperationException | LinkageError e) {
+				return null;
+			}
+		}
+
+		void commit(long value) {
+			try {
+				Object event = newEvent.invoke(factory);
+				set.invoke(event, 0, value);
+				commit.invoke(event);
+			} catch(ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
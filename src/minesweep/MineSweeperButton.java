@@ -1,11 +1,10 @@
 package minesweep;
 
+import java.awt.Graphics;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.ArrayList;
 
 import javax.swing.BorderFactory;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 
 public class MineSweeperButton extends JButton implements MouseListener{
@@ -21,55 +20,21 @@ public class MineSweeperButton extends JButton implements MouseListener{
 			COVER = 9, FACE_DEAD = 10, FACE_SMILE = 11, FACE_WIN = 12, FLAG = 13, MINE_GREY = 14, 
 			MINE_MISFLAGGED = 15, MINE_RED = 16, FACE_OH = 17;
 
-	private ArrayList<MineSweeperButton>neighbors; // each of the buttons neighbors
-	private int NUM; // the number of surrounding mines 
-	private boolean isAMine; // true if buttons is a mine
 	private int state; // integer representing the current state of the button 
-	private MineSweeper game; // the board and frame 
-	private int i, j;
+	private MineSweeperFrame game; // the board and frame 
+	private int cell; // index of this button's cell on the board
+	private double heat = Double.NaN; // probability this cell is a mine, shaded over the cover unless NaN
 
 	/**
 	 * Constructor for MineSweeperButton 
-	 * @param i - the row position of this button
-	 * @param j - the col position of this button
+	 * @param cell - the index of this button's cell on the board
 	 */
-	MineSweeperButton(MineSweeper game, int i, int j) {
-		this.NUM = -1;
-		this.neighbors = new ArrayList<>();
+	MineSweeperButton(MineSweeperFrame game, int cell) {
 		setState(COVER);
 		this.addMouseListener(this);
 		this.setBorder(BorderFactory.createEmptyBorder());
 		this.game = game;
-		this.i = i;
-		this.j = j;
-	}
-
-	/**
-	 * Set the number of mines This button has a neighbor
-	 * @param NUM - The number of mines 
-	 */
-	void setNum(int NUM){
-		this.NUM = NUM;
-	}
-
-	/**
-	 * Sets this button to be a mine
-	 */
-	void setIsAMine(){
-		this.isAMine = true;
-	}
-
-	boolean isAMine(){
-		return this.isAMine;
-	}
-
-
-	/**
-	 * Add Neighboring button to list of neighbors 
-	 * @param m - a neighboring button
-	 */
-	void addNeighbor(MineSweeperButton m ){
-		this.neighbors.add(m);
+		this.cell = cell;
 	}
 
 	/**
@@ -86,82 +51,40 @@ public class MineSweeperButton extends JButton implements MouseListener{
 	 */
 	void setState(int state) {
 		this.state = state;
-		this.setIcon(new ImageIcon(ICON_PATHS[state]));
+		this.setIcon(Icons.get(state));
 	}
 
 	/**
-	 *  Handles the mouse pressed event on this button and contains all the logic for click actions in minesweeper
+	 * Sets the probability shaded over the cover of this button
+	 * @param heat - the probability this cell is a mine or NaN for no shading
 	 */
-	@Override
-	public void mousePressed(MouseEvent e) {
-
-		if(game.gameOver()){
-			return;
-		}
-		final boolean LEFT_CLICK = e.getButton() == MouseEvent.BUTTON1;
-		final boolean RIGHT_CLICK = e.getButton() == MouseEvent.BUTTON3;
-
-        game.setFace(new ImageIcon(ICON_PATHS[FACE_OH]));
-
-		//first click must be left click
-		if(game.isFirstClick()){
-			if(LEFT_CLICK) {
-				game.generateMap(this, e);
-			}
-			return;
+	void setHeat(double heat) {
+		if(Double.compare(heat, this.heat) != 0){
+			this.heat = heat;
+			repaint();
 		}
+	}
 
-		//Right click toggles between flag and cover
-		if(RIGHT_CLICK && !this.isUncovered()){
-            state = getState()==COVER ? FLAG : COVER;
-
-		}else if(LEFT_CLICK){
-			if(getState() == COVER){
-
-				if(this.isAMine){
-					state = MINE_RED;
-				}else{
-					state = NUM;
-					if(state == ZERO){
-						//if this button has 0 mines around it fire the click event to all of it's neighbors
-						for(MineSweeperButton m : neighbors){
-							m.mousePressed(e);
-						}
-					}
-				}
-			}else if(this.isUncovered()){
-				// If this button has already been revealed
-				//counts the flags around it and if they match the number
-				// of this button then it will open up all of it's neighboring buttons
-				int flagCount = 0;
-				for(MineSweeperButton m : neighbors){ 
-					if(m.getState() == FLAG){
-						flagCount ++;  // count neighbors flagged 
-					}
-				}
-				if(flagCount == this.NUM){
-					// if the right number of neighbors have been flagged
-					// send action event to un-flagged neighbors
-					getNeighbors().stream()
-                            .filter(m -> m.getState() == COVER)
-                            .forEach(m -> m.mousePressed(e));
-				}
-			}
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		if(state == COVER && !Double.isNaN(heat)){
+			g.setColor(Icons.heat(heat));
+			g.fillRect(0, 0, getWidth(), getHeight());
 		}
-		setState(state); 
 	}
 
-	ArrayList<MineSweeperButton>getNeighbors(){
-		return this.neighbors;
+	/**
+	 *  Passes the mouse pressed event on this button to the game
+	 */
+	@Override
+	public void mousePressed(MouseEvent e) {
+		game.cellPressed(cell, e.getButton());
 	}
 
-
 	@Override
 	public void mouseReleased(MouseEvent e) {
-
-		if(!game.gameOver()){
-			game.setFace(new ImageIcon(ICON_PATHS[FACE_SMILE]));
-		}
+		game.cellReleased();
 	}
 
 	@Override
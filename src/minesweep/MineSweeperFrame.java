@@ -0,0 +1,838 @@
+package minesweep;
+
+import java.awt.BorderLayout;
+import java.awt.GridLayout;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import javax.swing.ButtonGroup;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Window that runs the MineSweeper panel, creates all game components and reacts to the moves made on the board.
+ * Started by {@link MineSweeper#main(String[])}.
+ * @author Martin Wallace 
+ *
+ */
+public class MineSweeperFrame implements BoardListener {
+
+	private final static int DEFAULT = MineSweeper.INTERMEDIATE; // change this to change the default starting difficulty
+
+	private final static boolean SECURE_RANDOM = "secure".equals(System.getProperty("minesweep.random")); // place mines straight from SecureRandom
+	private final static Long SEED = Long.getLong("minesweep.seed"); // seed every game is generated from, random when null
+	private final static long NO_GUESS_BUDGET = 2000; // milliseconds to look for a no-guess board before falling back
+	private final static int POOL_SIZE = 4; // boards generated ahead of time for each difficulty
+	private final static Path SAVE = Paths.get(System.getProperty("minesweep.save", "resources/savedgame.bin")); // game in progress kept between runs
+	private final static String REPLAYS = System.getProperty("minesweep.replays", "replays"); // directory every game is recorded to, "none" to not record
+	private final static String GAMES = System.getProperty("minesweep.games", "resources/games.log"); // file every finished game is logged to, "none" to not log
+
+	private static Random ran = new java.security.SecureRandom(); // random object for seeds and SecureRandom map generation
+
+	private int difficulty;
+	private boolean gameOver;
+	private boolean firstClick; // flag to indicate player has started game
+	private JFrame frame;
+	private JPanel all;
+    private JButton face, timer, mines;
+	private BoardView view;
+	private boolean noGuess; // only hand out boards that can be won without guessing
+	private NoGuessGenerator generator = new NoGuessGenerator(Runtime.getRuntime().availableProcessors());
+	// boards ready for the first click, generated on the pool's own thread so a refill never competes with a first click
+	private BoardPool pool = new BoardPool(POOL_SIZE, new NoGuessGenerator(1), NO_GUESS_BUDGET, ran);
+	private boolean canvasRenderer = "canvas".equals(System.getProperty("minesweep.renderer")); // draw the board in one component
+	private Board board;
+	private boolean heatMap; // shade covered cells by the probability they are a mine
+	private ProbabilityEngine probabilities; // kept up to date with every move while the heat map is shown
+	private int totalMines;
+	private long clockStart; // System.nanoTime() the clock counts from: the first reveal, less any time played before a resume
+	private long finalMillis; // time the game took, fixed by the reveal that ended it
+	private long seed; // seed the current board was generated from
+	private int origin = -1; // cell the board was generated around when it came from the pool, -1 otherwise
+	private Timer clock; // updates the time shown just after each whole second while a game is being played
+	private int iconLoadsAtStart; // image loads counted before the current game started
+	private HighScoreIO scoreManager = new HighScoreIO();
+	private Replay.Recorder recorder; // records the current game once its mines are placed
+	private Replay.Game lastGame; // the last game recorded, shown again by Replay Last Game
+	private Replay.Game watching; // game being replayed on the board, clicks are ignored while it plays
+	private GameLog gameLog = "none".equals(GAMES) ? null : new GameLog(Paths.get(GAMES));
+	private GameLog.Game played; // statistics of the current game for the game log, null when it is not logged
+
+
+	/**
+	 * Opens the window and starts the first game. {@code --replay <file> [game]} shows a recorded game at the speed
+	 * it was played, the first one in the file unless a 1 based game number is given
+	 */
+	static void launch(String[]args) throws IOException {
+		Replay.Game replay = null;
+		if(args.length >= 2 && "--replay".equals(args[0])){
+			int number = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+			try(Replay.Reader reader = new Replay.Reader(Files.newInputStream(Paths.get(args[1])))) {
+				for(int i = 0; i < number; i++) {
+					replay = reader.next();
+					if(replay == null){
+						throw new IllegalArgumentException(args[1] + " holds fewer than " + number + " games");
+					}
+				}
+			}
+		}
+		final Replay.Game game = replay;
+		SwingUtilities.invokeLater(() -> {
+			MineSweeperFrame mineSweeper = new MineSweeperFrame();
+			mineSweeper.start();
+			if(game != null){
+				mineSweeper.watch(game);
+			}
+			if(MineSweeper.STATS){
+				// queued behind the first paint of the frame
+				SwingUtilities.invokeLater(() -> System.err.println("Ready: first frame shown"));
+			}
+		});
+	}
+
+	/**
+	 * Initializes frame then adds the menu and starts the first game. 
+	 * Everything after this is driven by events on the Swing event thread: moves on the board fire
+	 * {@link BoardListener} events and the timer ticks once a second while a game is being played.
+	 */
+	private void start() {
+		difficulty = DEFAULT;
+		// the time shown is read from the clock rather than counted, so late ticks never add up to drift
+		clock = new Timer(1000, e -> {
+			long tick = Metrics.start();
+			long millis = elapsedMillis();
+			timer.setText(String.format("Time: %d", millis / 1000));
+			clock.setInitialDelay((int) (1000 - millis % 1000));
+			clock.restart();
+			Metrics.TICK.recordSince(tick);
+		});
+		clock.setRepeats(false);
+		try {
+			scoreManager.startWatching(); // show scores won by other games sharing the file
+		} catch(IOException e) {
+			System.err.println("Unable to watch high score file");
+		}
+		initializeFrame();
+		initializeMenu();
+		newGame();
+		resume();
+	}
+
+	/**
+	 * Continues the game saved when the game was last closed, if there is one. The save is deleted once it has been
+	 * restored and kept if it could not be read
+	 */
+	private void resume() {
+		if(!Files.exists(SAVE)){
+			return;
+		}
+		SavedGame saved;
+		try {
+			saved = SavedGame.read(SAVE);
+		} catch(IOException e) {
+			System.err.println("Unable to restore saved game");
+			e.printStackTrace();
+			return;
+		}
+		if(saved.difficulty < 0 || saved.difficulty >= MineSweeper.VALUES.length
+				|| saved.board.getRows() != MineSweeper.VALUES[saved.difficulty][MineSweeper.ROW]
+				|| saved.board.getCols() != MineSweeper.VALUES[saved.difficulty][MineSweeper.COL]){
+			System.err.println("Saved game is not one of the difficulties, leaving it in " + SAVE);
+			return;
+		}
+		difficulty = saved.difficulty;
+		newGame();
+		// the view only needs the size of the board, which is the same, so it is kept for the restored board
+		board = saved.board;
+		board.setListener(this);
+		firstClick = false;
+		startClock(saved.elapsed);
+		totalMines = board.getMineCount();
+		origin = -1;
+		played = new GameLog.Game(MineSweeper.VALUES[difficulty], 0); // the save does not keep the seed or the clicks made before it
+		int[] shown = new int[board.size()];
+		int n = 0;
+		for(int cell = 0; cell < board.size(); cell++) {
+			if(board.getState(cell) != Board.COVERED){
+				shown[n++] = cell;
+			}
+		}
+		refreshCells(Arrays.copyOf(shown, n));
+		flagsChanged(board.getFlagCount());
+		timer.setText(String.format("Time: %d", saved.elapsed / 1000));
+		if(heatMap){
+			setHeatMap(true);
+		}
+		try {
+			Files.delete(SAVE);
+		} catch(IOException e) {
+			System.err.println("Unable to delete saved game");
+		}
+	}
+
+	/**
+	 * Saves the game in progress, if any, so it is continued on the next start and exits
+	 */
+	private void exit() {
+		if(!firstClick && !gameOver && watching == null){
+			long start = System.nanoTime();
+			try {
+				new SavedGame(difficulty, elapsedMillis(), board).write(SAVE);
+				if(MineSweeper.STATS){
+					System.err.printf("Game saved to %s in %.3f ms%n", SAVE, (System.nanoTime() - start) / 1e6);
+				}
+			} catch(IOException e) {
+				System.err.println("Unable to save game");
+				e.printStackTrace();
+			}
+		}
+		if(gameLog != null){
+			try {
+				gameLog.close();
+			} catch(IOException e) {
+				System.err.println("Unable to finish writing game log");
+			}
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Replaces the current board with a fresh one at the current difficulty
+	 */
+	private void newGame() {
+		clock.stop();
+		saveReplay(Replay.ABANDONED);
+		logGame(Replay.ABANDONED);
+		watching = null;
+		iconLoadsAtStart = Icons.getLoadCount();
+		if(all != null){
+			clearComponents();
+		}
+		gameOver = false;
+		this.firstClick = true;
+		createMap();
+		if(usePool()){
+			pool.prefetch(MineSweeper.VALUES[difficulty], noGuess);
+		}
+		setTopButtons();
+		frame.pack();
+		frame.validate();
+		frame.repaint();
+		finalMillis = 0;
+		timer.setText("Time: 0");
+	}
+
+	/**
+	 * Starts the clock
+	 * @param played - milliseconds the game had already been played for
+	 */
+	private void startClock(long played) {
+		clockStart = System.nanoTime() - played * 1_000_000;
+		clock.setInitialDelay((int) (1000 - played % 1000));
+		clock.restart();
+	}
+
+	/**
+	 * Stops the clock at the reveal that ended the game and shows the time to the millisecond
+	 */
+	private void stopClock() {
+		finalMillis = elapsedMillis();
+		clock.stop();
+		timer.setText("Time: " + Leaderboard.seconds(finalMillis));
+	}
+
+	/**
+	 * @return milliseconds since the first reveal, or the time the game took once it is over
+	 */
+	private long elapsedMillis() {
+		return gameOver ? finalMillis : firstClick ? 0 : (System.nanoTime() - clockStart) / 1_000_000;
+	}
+
+	/**
+	 * Prints the statistics of the game that just ended when enabled with -Dminesweep.stats=true
+	 */
+	private void printStats() {
+		if(MineSweeper.STATS){
+			System.err.printf("Image loads this game: %d (%d since startup)%n",
+					Icons.getLoadCount() - iconLoadsAtStart, Icons.getLoadCount());
+			if(!SECURE_RANDOM || noGuess){
+				System.err.printf(origin < 0 ? "Board seed: %d%n" : "Board seed: %d (generated around cell %d)%n",
+						seed, origin);
+			}
+			if(usePool()){
+				System.err.printf("Board pool: %d hits, %d misses, %d rejected%n",
+						pool.getHits(MineSweeper.VALUES[difficulty], noGuess), pool.getMisses(MineSweeper.VALUES[difficulty], noGuess),
+						pool.getRejected(MineSweeper.VALUES[difficulty], noGuess));
+			}
+			if(noGuess){
+				System.err.printf("No-guess attempts per board: %.1f (%d boards, %d timeouts)%n",
+						generator.getAttemptsPerBoard(MineSweeper.VALUES[difficulty]), generator.getAccepted(MineSweeper.VALUES[difficulty]),
+						generator.getTimeouts(MineSweeper.VALUES[difficulty]));
+			}
+		}
+	}
+
+	/**
+	 * Clears components from frame and invalidates 
+	 */
+	public void clearComponents(){
+		frame.getContentPane().removeAll();
+		frame.invalidate();
+	}
+
+	@Override
+	public void cellsChanged(int[] cells) {
+		if(cells.length > 1){
+			Metrics.CASCADE.record(cells.length);
+		}
+		if(played != null){
+			played.cellsChanged(cells);
+		}
+		refreshCells(cells);
+		if(probabilities != null){
+			probabilities.cellsChanged(cells);
+			updateHeat();
+		}
+	}
+
+	/**
+	 * Shades the covered cells by the probability they are a mine, or removes the shading once the game is over
+	 */
+	private void updateHeat() {
+		if(probabilities == null || firstClick || board.isLost() || board.isWon()){
+			view.setHeat(null);
+			return;
+		}
+		long start = System.nanoTime();
+		view.setHeat(probabilities.getProbabilities());
+		if(MineSweeper.STATS){
+			System.err.printf("Probabilities computed in %.3f ms (%d groups recounted so far%s)%n",
+					(System.nanoTime() - start) / 1e6, probabilities.getRecounted(),
+					probabilities.isExact() ? "" : ", approximated");
+		}
+	}
+
+	/**
+	 * Shows or hides the heat map. The engine is only kept while it is shown, so it is given every revealed cell
+	 * when it is turned on in the middle of a game
+	 */
+	private void setHeatMap(boolean shown) {
+		heatMap = shown;
+		probabilities = null;
+		if(shown){
+			probabilities = new ProbabilityEngine(board);
+			int[] revealed = new int[board.getRevealedCount()];
+			int n = 0;
+			for(int cell = 0; cell < board.size() && n < revealed.length; cell++) {
+				if(board.getState(cell) == Board.REVEALED){
+					revealed[n++] = cell;
+				}
+			}
+			probabilities.cellsChanged(revealed);
+		}
+		updateHeat();
+	}
+
+	@Override
+	public void flagsChanged(int flagCount) {
+		mines.setText(String.format("Bombs left: %d", Math.max((MineSweeper.VALUES[difficulty][MineSweeper.MINES] - flagCount), 0)));
+	}
+
+	@Override
+	public void gameLost(int cell) {
+		stopClock();
+		gameOver = true;
+		saveReplay(Replay.LOST);
+		logGame(Replay.LOST);
+		face.setIcon(Icons.get(MineSweeperButton.FACE_DEAD));
+		showGameLostScreen();
+		printStats();
+	}
+
+	@Override
+	public void gameWon() {
+		stopClock();
+		gameOver = true;
+		saveReplay(Replay.WON);
+		logGame(Replay.WON);
+		face.setIcon(Icons.get(MineSweeperButton.FACE_WIN));
+		printStats();
+		if(watching != null){
+			return; // a replayed win is not a new run
+		}
+		// every run is recorded, only the ones making the list are asked for a name
+		int time = (int) finalMillis;
+		String name = "";
+		if(scoreManager.isHighScore(difficulty, time)){
+			name = JOptionPane.showInputDialog("You got a high score! Enter your name: \n");
+		}
+		scoreManager.addScore(difficulty, time, name);
+		JOptionPane.showMessageDialog(null, "Congratulations!! \n"
+				+ scoreManager.getRankInfo(MineSweeper.VALUES[difficulty], time) + "\nHigh scores: \n"
+				+ scoreManager.getDifficultyInfo(difficulty));
+	}
+
+
+	/**
+	 * Initializes frame sets title/visible/default close operation
+	 */
+	private void initializeFrame(){
+		frame = new JFrame();
+		frame.setTitle("MineSweeper");
+		frame.setResizable(false);
+		frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+		frame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				exit();
+			}
+		});
+		frame.setVisible(true);
+	}
+
+
+	/**
+	 * Sets the face, timer and mines left buttons 
+	 */
+	private void setTopButtons(){
+        JPanel top = new JPanel(new GridLayout(1, 3));
+		mines = new JButton(String.format("Bombs left: %d", MineSweeper.VALUES[difficulty][MineSweeper.MINES]));
+		timer = new JButton("Time: 0");
+		face = new JButton();
+
+		face.addActionListener(e -> newGame());
+
+		face.setIcon(Icons.get(MineSweeperButton.FACE_SMILE));
+		top.add(mines);
+		top.add(face);
+		top.add(timer);
+		all.add(top, BorderLayout.NORTH);
+	}
+
+	private void createMap(){
+		all = new JPanel(new BorderLayout());
+		board = new Board(MineSweeper.VALUES[difficulty][MineSweeper.ROW], MineSweeper.VALUES[difficulty][MineSweeper.COL]);
+		board.setListener(this);
+		view = canvasRenderer ? new BoardCanvas(this, board) : new ButtonGridView(this, board);
+		probabilities = heatMap ? new ProbabilityEngine(board) : null;
+
+		all.add(view.getComponent(), BorderLayout.CENTER);  // finally add everything to the frame 
+		frame.add(all);
+	}
+
+	/**
+	 * Handles a mouse press on a cell of the board and passes the click on to the board which contains
+	 * the logic for click actions in minesweeper
+	 * @param cell - the index of the cell that was pressed
+	 * @param button - the mouse button that was pressed, as in {@link MouseEvent#getButton()}
+	 */
+	void cellPressed(int cell, int button) {
+		if(watching == null){
+			press(cell, button);
+		}
+	}
+
+	/**
+	 * Makes the move for a press on a cell, whether it came from the mouse or from a replay
+	 */
+	private void press(int cell, int button) {
+		if(gameOver){
+			return;
+		}
+		final boolean LEFT_CLICK = button == MouseEvent.BUTTON1;
+		final boolean RIGHT_CLICK = button == MouseEvent.BUTTON3;
+		final long pressTime = System.nanoTime();
+
+		setFace(MineSweeperButton.FACE_OH);
+
+		//first click must be left click
+		if(firstClick){
+			if(LEFT_CLICK) {
+				generateMap(cell);
+				record(cell, Replay.LEFT);
+				startClock(0); // after the mines are placed, which may take a while for a no-guess board
+				if(played != null){
+					played.clicks++;
+				}
+				board.reveal(cell);
+			}
+		}else if(RIGHT_CLICK){
+			//Right click toggles between flag and cover
+			record(cell, Replay.RIGHT);
+			if(board.toggleFlag(cell) && played != null){
+				played.flagToggled(board, cell);
+			}
+		}else if(LEFT_CLICK){
+			record(cell, Replay.LEFT);
+			if(played != null){
+				played.clicks++;
+			}
+			if(board.getState(cell) == Board.COVERED){
+				board.reveal(cell);
+			}else{
+				// If this cell has already been revealed open up all of it's neighboring cells
+				// when the right number of neighbors have been flagged
+				board.chord(cell);
+			}
+		}
+
+		if(MineSweeper.STATS || Metrics.ENABLED){
+			// repaints requested by the move are already queued so this runs once they have been painted
+			final String renderer = canvasRenderer ? "canvas" : "buttons";
+			SwingUtilities.invokeLater(() -> {
+				Metrics.PAINT.recordSince(pressTime);
+				if(MineSweeper.STATS){
+					System.err.printf("Move painted in %.3f ms (%s)%n", (System.nanoTime() - pressTime) / 1e6, renderer);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Handles the mouse being released over the board
+	 */
+	void cellReleased() {
+		if(watching == null){
+			release();
+		}
+	}
+
+	private void release() {
+		if(!gameOver){
+			record(0, Replay.RELEASE);
+			setFace(MineSweeperButton.FACE_SMILE);
+		}
+	}
+
+	/**
+	 * Adds a press or release to the recording of the current game
+	 */
+	private void record(int cell, int action) {
+		if(recorder != null){
+			recorder.event(cell, action, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Ends the recording of the current game and appends it to today's replay file
+	 * @param result - how the game ended, one of the results in {@link Replay}
+	 */
+	private void saveReplay(int result) {
+		if(recorder == null){
+			return;
+		}
+		byte[] game = recorder.finish(result, board.getRevealedCount());
+		recorder = null;
+		try {
+			lastGame = new Replay.Game(game);
+			if(!"none".equals(REPLAYS)){
+				Path file = Replay.dailyFile(Paths.get(REPLAYS));
+				Replay.append(file, game);
+				if(MineSweeper.STATS){
+					System.err.printf("Replay of %d bytes saved to %s%n", game.length, file);
+				}
+			}
+		} catch(IOException e) {
+			System.err.println("Unable to save replay");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Adds the current game to the game log, which writes it on its own thread
+	 * @param result - how the game ended, one of the results in {@link Replay}
+	 */
+	private void logGame(int result) {
+		if(played == null){
+			return;
+		}
+		if(gameLog != null){
+			gameLog.add(played.finish(result, elapsedMillis(), board.getRevealedCount()));
+		}
+		played = null;
+	}
+
+	/**
+	 * Shows a recorded game on the board at the speed it was played. Clicks on the board are ignored until it
+	 * ends or a new game is started
+	 * @param game - the game to show
+	 */
+	private void watch(Replay.Game game) {
+		int size = -1;
+		for(int i = 0; i < MineSweeper.VALUES.length; i++) {
+			if(Arrays.equals(MineSweeper.VALUES[i], game.values())){
+				size = i;
+			}
+		}
+		if(size < 0){
+			JOptionPane.showMessageDialog(null, String.format("Replays of %dx%d boards with %d mines can only be "
+					+ "played headlessly", game.rows, game.cols, game.mines));
+			return;
+		}
+		difficulty = size;
+		newGame();
+		watching = game;
+		playNext(game, game.events());
+	}
+
+	/**
+	 * Waits for the delay of the next event of the replay being shown and then plays it
+	 */
+	private void playNext(Replay.Game game, Replay.Events events) {
+		try {
+			if(watching != game || !events.next()){
+				return;
+			}
+		} catch(IOException e) {
+			System.err.println("Replay is damaged");
+			return;
+		}
+		final int cell = events.cell, action = events.action;
+		Timer delay = new Timer((int) Math.min(events.delay, Integer.MAX_VALUE), e -> {
+			if(watching != game){
+				return; // a new game was started while waiting
+			}
+			if(action == Replay.RELEASE){
+				release();
+			}else{
+				press(cell, action == Replay.LEFT ? MouseEvent.BUTTON1 : MouseEvent.BUTTON3);
+			}
+			playNext(game, events);
+		});
+		delay.setRepeats(false);
+		delay.start();
+	}
+
+	/**
+	 * Generates a random map based on the current difficulty and the placement of the first click
+     * @param first the index of the cell that received the first click.
+	 */
+    void generateMap(int first) {
+		this.firstClick = false;
+		this.totalMines = MineSweeper.VALUES[difficulty][MineSweeper.MINES];
+		this.origin = -1;
+		long now = System.currentTimeMillis();
+		long start = Metrics.start();
+		BoardPool.PooledBoard pooled = usePool() && watching == null ? pool.take(MineSweeper.VALUES[difficulty], noGuess, first, board) : null;
+		if(watching != null){
+			watching.placeMines(board, first);
+			seed = watching.seed;
+			origin = watching.origin;
+		}else if(pooled != null){
+			seed = pooled.seed;
+			origin = pooled.origin;
+		}else if(noGuess){
+			seed = SEED != null ? SEED : ran.nextLong();
+			// a fixed seed must give the same board on any machine, so it is not cut short by the time budget
+			OptionalLong accepted = SEED != null ? generator.generate(MineSweeper.VALUES[difficulty], first, seed)
+					: generator.generate(MineSweeper.VALUES[difficulty], first, seed, NO_GUESS_BUDGET);
+			if(accepted.isPresent()){
+				seed = accepted.getAsLong();
+			}else if(MineSweeper.STATS){
+				System.err.println("No no-guess board found in time, using a random board");
+			}
+			board.placeMines(totalMines, first, new SplittableRandom(seed)::nextInt);
+		}else if(SECURE_RANDOM){
+			board.placeMines(totalMines, first, ran::nextInt);
+		}else{
+			seed = SEED != null ? SEED : ran.nextLong();
+			board.placeMines(totalMines, first, new SplittableRandom(seed)::nextInt);
+		}
+		long counts = Metrics.start();
+		board.computeCounts();
+		Metrics.COUNTS.recordSince(counts);
+		Metrics.GENERATE.recordSince(start);
+		if(watching == null){
+			played = new GameLog.Game(MineSweeper.VALUES[difficulty], SECURE_RANDOM && !noGuess ? 0 : seed);
+			recorder = SECURE_RANDOM && !noGuess ? new Replay.Recorder(MineSweeper.VALUES[difficulty], board, now)
+					: new Replay.Recorder(MineSweeper.VALUES[difficulty], seed, origin, now);
+		}
+	}
+
+	/**
+	 * @return true if boards come from the pool, which is skipped when every game must come from a fixed seed or
+	 * straight from SecureRandom
+	 */
+	private boolean usePool() {
+		return SEED == null && !SECURE_RANDOM;
+	}
+
+	/**
+	 * Updates the icons of the given cells to match their state on the board
+	 * @param cells - the indexes of the cells changed by the last move
+	 */
+	void refreshCells(int[] cells) {
+		for(int cell : cells) {
+			int state;
+			switch(board.getState(cell)) {
+				case Board.FLAGGED: state = MineSweeperButton.FLAG; break;
+				case Board.REVEALED: state = board.getCount(cell); break;
+				case Board.EXPLODED: state = MineSweeperButton.MINE_RED; break;
+				default: state = MineSweeperButton.COVER; break;
+			}
+			view.setIcon(cell, state);
+		}
+	}
+
+	/**
+	 * Sets the menu for the frame with a new game option for different difficulties and and exit option 
+	 */
+	public void initializeMenu() {
+		JMenuBar menu = new JMenuBar();
+		JMenu fileMenu = new JMenu("File");
+		JMenu newGameSubMenu = new JMenu("New Game");
+		JMenuItem replayLast = new JMenuItem("Replay Last Game");
+		JMenuItem exit = new JMenuItem("Exit");
+		JMenuItem newBeginner = new JMenuItem("Beginner");
+		JMenuItem newIntermediate = new JMenuItem("Intermediate");
+		JMenuItem newExpert = new JMenuItem("Expert");
+		JMenuItem newEndless = new JMenuItem("Endless");
+		JMenu highScoreSubMenu = new JMenu("High Scores");
+
+		JMenuItem highScoreB = new JMenuItem("Beginner");
+		JMenuItem highScoreI = new JMenuItem("Intermediate");
+		JMenuItem highScoreE = new JMenuItem("Expert");
+		
+		highScoreB.addActionListener(e -> JOptionPane.showMessageDialog(null, "High scores: \n" + scoreManager.getDifficultyInfo(MineSweeper.BEGINNER)));
+		
+		highScoreI.addActionListener(e -> JOptionPane.showMessageDialog(null, "High scores: \n" + scoreManager.getDifficultyInfo(MineSweeper.INTERMEDIATE)));
+		
+		highScoreE.addActionListener(e -> JOptionPane.showMessageDialog(null, "High scores: \n" + scoreManager.getDifficultyInfo(MineSweeper.EXPERT)));
+		
+		newBeginner.addActionListener(e -> {
+            difficulty = MineSweeper.BEGINNER;
+            newGame();
+        });
+
+		newIntermediate.addActionListener(e -> {
+            difficulty = MineSweeper.INTERMEDIATE;
+            newGame();
+        });
+
+		newExpert.addActionListener(e -> {
+            difficulty = MineSweeper.EXPERT;
+            newGame();
+        });
+
+		newEndless.addActionListener(e -> EndlessView.open(SEED != null ? SEED : ran.nextLong()));
+
+		JCheckBoxMenuItem noGuessItem = new JCheckBoxMenuItem("No Guess", noGuess);
+		noGuessItem.addActionListener(e -> {
+            noGuess = noGuessItem.isSelected();
+            newGame();
+        });
+
+		replayLast.addActionListener(e -> {
+            if(lastGame != null){
+                watch(lastGame);
+            }
+        });
+
+		exit.addActionListener(e -> exit());
+
+		// lets the two board renderers be compared side by side, each choice starts a new game
+		JMenu viewMenu = new JMenu("View");
+		JRadioButtonMenuItem buttonView = new JRadioButtonMenuItem("Button Grid", !canvasRenderer);
+		JRadioButtonMenuItem canvasView = new JRadioButtonMenuItem("Single Component", canvasRenderer);
+		ButtonGroup renderers = new ButtonGroup();
+		renderers.add(buttonView);
+		renderers.add(canvasView);
+
+		buttonView.addActionListener(e -> {
+            canvasRenderer = false;
+            newGame();
+        });
+
+		canvasView.addActionListener(e -> {
+            canvasRenderer = true;
+            newGame();
+        });
+
+		JCheckBoxMenuItem heatMapItem = new JCheckBoxMenuItem("Mine Probabilities", heatMap);
+		heatMapItem.addActionListener(e -> setHeatMap(heatMapItem.isSelected()));
+		
+		highScoreSubMenu.add(highScoreB);
+		highScoreSubMenu.add(highScoreI);
+		highScoreSubMenu.add(highScoreE);
+		newGameSubMenu.add(newBeginner);
+		newGameSubMenu.add(newIntermediate);
+		newGameSubMenu.add(newExpert);
+		newGameSubMenu.add(newEndless);
+		newGameSubMenu.addSeparator();
+		newGameSubMenu.add(noGuessItem);
+		fileMenu.add(newGameSubMenu);
+		fileMenu.add(highScoreSubMenu);
+		fileMenu.add(replayLast);
+		fileMenu.add(exit);
+		viewMenu.add(buttonView);
+		viewMenu.add(canvasView);
+		viewMenu.addSeparator();
+		viewMenu.add(heatMapItem);
+		menu.add(fileMenu);
+		menu.add(viewMenu);
+		frame.setJMenuBar(menu);
+	}
+
+	/**
+	 * Displays all mines that were not flagged or were mis-flagged after the game is lost
+	 */
+	private void showGameLostScreen() {
+        for (int cell = 0; cell < board.size(); cell++) {
+            boolean isAMine = board.isMine(cell);
+            if (view.getIcon(cell) == MineSweeperButton.COVER && isAMine) {
+                view.setIcon(cell, MineSweeperButton.MINE_GREY);
+            }
+            if (view.getIcon(cell) == MineSweeperButton.FLAG && !isAMine) {
+                view.setIcon(cell, MineSweeperButton.MINE_MISFLAGGED);
+            }
+        }
+
+	}
+
+    /**
+     * @param state the state constant of the icon to show on the face button
+     */
+    void setFace(int state) {
+		this.face.setIcon(Icons.get(state));
+	}
+
+    /**
+     * @return the board holding the mines and cell states of the current game
+     */
+    Board getBoard() {
+		return this.board;
+	}
+
+    /**
+     * @return true if game is in first click state
+     */
+    boolean isFirstClick(){
+		return this.firstClick;
+	}
+
+
+    /**
+     * @return true if game over else false
+     */
+    boolean gameOver() {
+        return this.gameOver;
+    }
+}
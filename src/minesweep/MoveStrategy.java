@@ -0,0 +1,26 @@
+package minesweep;
+
+import java.util.SplittableRandom;
+
+/**
+ * Decides which cell to reveal next in a simulated game. A new strategy is created for every game so
+ * implementations may keep state about the game they are playing.
+ * @author Martin Wallace
+ */
+public interface MoveStrategy {
+
+	/**
+	 * Picks the next cell to reveal. The first call is made before any mines are placed and picks the first click
+	 * @param view - what the player can see of the board
+	 * @param random - random numbers for this game, seeded so the game can be reproduced
+	 * @return the index of a covered cell to reveal
+	 */
+	int nextMove(PlayerView view, SplittableRandom random);
+
+	/**
+	 * Called after every move with the cells it changed
+	 * @param view - what the player can see of the board
+	 * @param cells - the indexes of the changed cells
+	 */
+	default void cellsChanged(PlayerView view, int[] cells) { }
+}
@@ -0,0 +1,166 @@
+package minesweep;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Counts the mines surrounding every cell of a board 64 cells at a time. The mines of each row are packed into
+ * {@code long} bitboards, the eight neighbor directions are formed with shifts, and the eight one bit planes are
+ * summed with bit-sliced adders into four bit counts. Very large boards are split into row bands that are counted
+ * in parallel on the common fork-join pool.
+ * @author Martin Wallace
+ */
+final class NeighborCounter {
+
+	private static final int PARALLEL_THRESHOLD = 1 << 18; // boards with fewer cells are counted on the calling thread
+	private static final int BAND_CELLS = 1 << 16; // cells per task once a board is split into bands
+
+	private final int rows, cols, words; // words is the number of longs holding one row
+	private final long[] packed; // row r occupies packed[r * words] to packed[(r + 1) * words - 1]
+	private final byte[] counts;
+
+	private NeighborCounter(BitSet mines, int rows, int cols, byte[] counts) {
+		this.rows = rows;
+		this.cols = cols;
+		this.words = (cols + 63) >>> 6;
+		this.packed = pack(mines.toLongArray(), rows, cols, words);
+		this.counts = counts;
+	}
+
+	/**
+	 * Computes the number of surrounding mines for every cell
+	 * @param mines - the mines of the board, one bit per cell in row major order
+	 * @param rows - the number of rows on the board
+	 * @param cols - the number of columns on the board
+	 * @param counts - receives the count of each cell in row major order
+	 */
+	static void count(BitSet mines, int rows, int cols, byte[] counts) {
+		NeighborCounter counter = new NeighborCounter(mines, rows, cols, counts);
+		if((long) rows * cols < PARALLEL_THRESHOLD){
+			counter.countRows(0, rows);
+		}else{
+			int bandRows = Math.max(BAND_CELLS / cols, 1);
+			ForkJoinPool.commonPool().invoke(counter.new Band(0, rows, bandRows));
+		}
+	}
+
+	/**
+	 * Copies each row of the flat bitset into its own run of words so that a row always starts on bit 0 of a word
+	 */
+	private static long[] pack(long[] flat, int rows, int cols, int words) {
+		long[] packed = new long[rows * words];
+		for(int r = 0; r < rows; r++) {
+			long start = (long) r * cols;
+			for(int w = 0; w < words; w++) {
+				int bits = Math.min(64, cols - (w << 6));
+				long word = bitsAt(flat, start + ((long) w << 6));
+				if(bits < 64){
+					word &= (1L << bits) - 1;
+				}
+				packed[r * words + w] = word;
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * @return the 64 bits of the flat bitset starting at the given bit offset
+	 */
+	private static long bitsAt(long[] flat, long offset) {
+		int index = (int) (offset >>> 6);
+		int shift = (int) (offset & 63);
+		long low = index < flat.length ? flat[index] >>> shift : 0;
+		if(shift == 0 || index + 1 >= flat.length){
+			return low;
+		}
+		return low | (flat[index + 1] << (64 - shift));
+	}
+
+	/**
+	 * Counts rows from first (inclusive) to last (exclusive)
+	 */
+	private void countRows(int first, int last) {
+		for(int r = first; r < last; r++) {
+			int up = (r - 1) * words, mid = r * words, down = (r + 1) * words;
+			boolean hasUp = r > 0, hasDown = r < rows - 1;
+			for(int w = 0; w < words; w++) {
+				// one plane per neighbor direction, bit j set if that neighbor of column j is a mine
+				long n = 0, nw = 0, ne = 0, s = 0, sw = 0, se = 0;
+				if(hasUp){
+					n = packed[up + w];
+					nw = west(up, w);
+					ne = east(up, w);
+				}
+				if(hasDown){
+					s = packed[down + w];
+					sw = west(down, w);
+					se = east(down, w);
+				}
+				long we = west(mid, w), ea = east(mid, w);
+
+				// sum the eight planes with carry-save adders into the four bit planes b0 to b3
+				long sumN = n ^ nw ^ ne, carryN = (n & nw) | (ne & (n ^ nw));
+				long sumS = s ^ sw ^ se, carryS = (s & sw) | (se & (s ^ sw));
+				long sumM = we ^ ea, carryM = we & ea;
+				long b0 = sumN ^ sumS ^ sumM, twos = (sumN & sumS) | (sumM & (sumN ^ sumS));
+				long t = carryN ^ carryS ^ carryM, fours = (carryN & carryS) | (carryM & (carryN ^ carryS));
+				long b1 = t ^ twos, moreFours = t & twos;
+				long b2 = fours ^ moreFours, b3 = fours & moreFours;
+
+				int offset = r * cols + (w << 6);
+				int bits = Math.min(64, cols - (w << 6));
+				if((b0 | b1 | b2 | b3) == 0){
+					Arrays.fill(counts, offset, offset + bits, (byte) 0);
+					continue;
+				}
+				for(int b = 0; b < bits; b++) {
+					counts[offset + b] = (byte) (((b0 >>> b) & 1) | (((b1 >>> b) & 1) << 1)
+							| (((b2 >>> b) & 1) << 2) | (((b3 >>> b) & 1) << 3));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the word of the row starting at base shifted so bit j holds the mine at column j - 1
+	 */
+	private long west(int base, int w) {
+		long prev = w > 0 ? packed[base + w - 1] : 0;
+		return (packed[base + w] << 1) | (prev >>> 63);
+	}
+
+	/**
+	 * @return the word of the row starting at base shifted so bit j holds the mine at column j + 1
+	 */
+	private long east(int base, int w) {
+		long next = w < words - 1 ? packed[base + w + 1] : 0;
+		return (packed[base + w] >>> 1) | (next << 63);
+	}
+
+	/**
+	 * Fork-join task counting a band of rows, split in half until each band holds about BAND_CELLS cells
+	 */
+	private class Band extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int first, last, bandRows;
+
+		Band(int first, int last, int bandRows) {
+			this.first = first;
+			this.last = last;
+			this.bandRows = bandRows;
+		}
+
+		@Override
+		protected void compute() {
+			if(last - first <= bandRows){
+				countRows(first, last);
+			}else{
+				int middle = (first + last) >>> 1;
+				invokeAll(new Band(first, middle, bandRows), new Band(middle, last, bandRows));
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package minesweep;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates boards that can be won from the first click by deduction alone. Candidate boards are generated from
+ * seeds and played by the {@link Solver}; the first one it wins without guessing is accepted. Several candidates
+ * are tried in parallel, but the lowest numbered candidate to pass is taken rather than the first to finish, so
+ * the board depends only on the seed. Boards are looked for within a time budget, or among a fixed number of
+ * candidates when they must be the same every time.
+ * <p>
+ * Boards are handed out as the seed they are placed from, so the same board can be rebuilt with
+ * {@link Board#placeMines} and a {@code SplittableRandom} seeded with it.
+ * @author Martin Wallace
+ */
+public class NoGuessGenerator {
+
+	static final int MAX_ATTEMPTS = 1000; // candidates tried for a board that must be the same every time
+
+	private final int threads;
+	private final ExecutorService pool;
+	private final Map<String, Counters> counters = new ConcurrentHashMap<>(); // metrics for each board size
+
+	/**
+	 * @param threads - the number of candidate boards tried at the same time
+	 */
+	public NoGuessGenerator(int threads) {
+		this.threads = threads;
+		this.pool = threads > 1 ? Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "no-guess-generator");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+	}
+
+	/**
+	 * Looks for a board that can be won without guessing. The board is the same one {@link #generate(int[], int, long)}
+	 * finds unless the budget runs out first
+	 * @param values - rows, cols and mines of the board
+	 * @param first - the index of the first click
+	 * @param seed - seed the candidate seeds are derived from
+	 * @param budgetMillis - how long to look for before giving up
+	 * @return the seed of an accepted board, or empty if none was found within the budget
+	 */
+	public OptionalLong generate(int[] values, int first, long seed, long budgetMillis) {
+		return generate(values, first, seed, Long.MAX_VALUE,
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+	}
+
+	/**
+	 * Looks for a board that can be won without guessing among the first {@link #MAX_ATTEMPTS} candidates, taking no
+	 * notice of the time. The same seed always gives the same board whatever the number of threads or how busy they
+	 * are, so boards generated from a fixed seed can be played again
+	 * @param values - rows, cols and mines of the board
+	 * @param first - the index of the first click
+	 * @param seed - seed the candidate seeds are derived from
+	 * @return the seed of the first candidate accepted, or empty if none of them was
+	 */
+	public OptionalLong generate(int[] values, int first, long seed) {
+		return generate(values, first, seed, MAX_ATTEMPTS, Long.MAX_VALUE);
+	}
+
+	private OptionalLong generate(int[] values, int first, long seed, long maxAttempts, long deadline) {
+		Counters counter = counters(values);
+		AtomicLong best = new AtomicLong(maxAttempts); // lowest candidate accepted so far
+		if(pool == null){
+			search(values, first, seed, 0, 1, deadline, best, counter);
+		}else{
+			// each worker tries its own share of the candidates and stops once it passes the lowest one accepted, so
+			// the board found does not depend on which worker got there first
+			List<Callable<Void>> workers = new ArrayList<>();
+			for(int w = 0; w < threads; w++) {
+				final int worker = w;
+				workers.add(() -> {
+					search(values, first, seed, worker, threads, deadline, best, counter);
+					return null;
+				});
+			}
+			try {
+				pool.invokeAll(workers);
+			} catch(InterruptedException e) {
+				best.set(-1); // stops the workers still searching
+				Thread.currentThread().interrupt();
+				return OptionalLong.empty();
+			}
+		}
+		long found = best.get();
+		return record(counter, found < maxAttempts ? OptionalLong.of(candidate(seed, found)) : OptionalLong.empty());
+	}
+
+	/**
+	 * Tries candidates number worker, worker + stride, worker + 2 * stride and so on until one is accepted, another
+	 * worker has accepted a lower one or the deadline passes
+	 * @param best - the lowest candidate accepted so far, lowered when this worker accepts one
+	 */
+	private static void search(int[] values, int first, long seed, int worker, int stride, long deadline,
+							   AtomicLong best, Counters counter) {
+		for(long attempt = worker; attempt < best.get() && System.nanoTime() < deadline; attempt += stride) {
+			counter.attempts.increment();
+			Board board = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+			board.placeMines(values[MineSweeper.MINES], first, new SplittableRandom(candidate(seed, attempt))::nextInt);
+			board.computeCounts();
+			if(isNoGuess(board, first)){
+				best.accumulateAndGet(attempt, Math::min);
+				return;
+			}
+			Metrics.REJECTED.add(1);
+		}
+	}
+
+	/**
+	 * @return the seed of candidate number attempt
+	 */
+	private static long candidate(long seed, long attempt) {
+		return Simulator.mix(seed + attempt * 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * Plays the board with the solver, only ever revealing cells it has proven safe
+	 * @param board - a board with its mines placed and nothing revealed
+	 * @param first - the index of the first click
+	 * @return true if the solver won the board without guessing
+	 */
+	static boolean isNoGuess(Board board, int first) {
+		Solver solver = new Solver(board);
+		int cell = first;
+		while(true) {
+			int[] changed = board.reveal(cell);
+			if(board.isWon()){
+				return true;
+			}
+			if(board.isLost()){
+				return false;
+			}
+			solver.cellsChanged(changed);
+			cell = solver.nextSafe();
+			if(cell < 0){
+				return false;
+			}
+		}
+	}
+
+	private static OptionalLong record(Counters counter, OptionalLong result) {
+		if(result.isPresent()){
+			counter.accepted.increment();
+		}else{
+			counter.timeouts.increment();
+		}
+		return result;
+	}
+
+	private Counters counters(int[] values) {
+		return counters.computeIfAbsent(key(values), k -> new Counters());
+	}
+
+	/**
+	 * @return the name metrics are kept under for a board size
+	 */
+	static String key(int[] values) {
+		return values[MineSweeper.ROW] + "x" + values[MineSweeper.COL] + "x" + values[MineSweeper.MINES];
+	}
+
+	/**
+	 * @return the number of candidate boards tried for a board size
+	 */
+	public long getAttempts(int[] values) {
+		return counters(values).attempts.sum();
+	}
+
+	/**
+	 * @return the number of boards accepted for a board size
+	 */
+	public long getAccepted(int[] values) {
+		return counters(values).accepted.sum();
+	}
+
+	/**
+	 * @return the number of times the budget ran out before a board was accepted for a board size
+	 */
+	public long getTimeouts(int[] values) {
+		return counters(values).timeouts.sum();
+	}
+
+	/**
+	 * @return the average number of candidates tried per accepted board, or NaN if none was accepted
+	 */
+	public double getAttemptsPerBoard(int[] values) {
+		long accepted = getAccepted(values);
+		return accepted == 0 ? Double.NaN : (double) getAttempts(values) / accepted;
+	}
+
+	private static class Counters {
+		final LongAdder attempts = new LongAdder(), accepted = new LongAdder(), timeouts = new LongAdder();
+	}
+}
@@ -0,0 +1,50 @@
+package minesweep;
+
+/**
+ * Read-only view of a board showing only what a player can see: the state of every cell and the numbers on the
+ * revealed ones. Used by move strategies and solvers so they can not peek at the mines.
+ * @author Martin Wallace
+ */
+public interface PlayerView {
+
+	int getRows();
+
+	int getCols();
+
+	/**
+	 * @return the total number of cells on the board
+	 */
+	int size();
+
+	/**
+	 * @return the state of the cell, one of Board.COVERED, FLAGGED, REVEALED or EXPLODED
+	 */
+	int getState(int cell);
+
+	/**
+	 * @return the number of mines surrounding the cell. Only defined once the cell has been revealed
+	 */
+	int getCount(int cell);
+
+	/**
+	 * @return the number of mines on the board
+	 */
+	int getMineCount();
+
+	/**
+	 * @return the number of flagged cells on the board
+	 */
+	int getFlagCount();
+
+	default int index(int row, int col) {
+		return row * getCols() + col;
+	}
+
+	default int row(int cell) {
+		return cell / getCols();
+	}
+
+	default int col(int cell) {
+		return cell % getCols();
+	}
+}
@@ -0,0 +1,511 @@
+package minesweep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the exact probability that each covered cell is a mine, given the numbers a player can see and the
+ * number of mines on the board.
+ * <p>
+ * Cells the {@link Solver} can deduce are certain. The remaining frontier cells are split into independent groups
+ * and each group's arrangements are counted by how many mines they use. Rather than listing every arrangement, the
+ * cells of a group are decided one at a time while only remembering how many mines have been placed around the
+ * numbers that still have undecided cells, so a long group along the edge of an opening is counted in time linear
+ * in its length. The groups are then combined with every way of placing the rest of the mines among the covered
+ * cells that touch no number, so an arrangement using fewer mines on the frontier weighs as much as the many ways
+ * of placing the leftover mines elsewhere.
+ * <p>
+ * The counts of each group are kept between moves under the group's cells and numbers, so a move only recounts the
+ * groups it changed. Like the solver, flags are ignored since they may be wrong.
+ * @author Martin Wallace
+ */
+public class ProbabilityEngine {
+
+	private static final int MAX_CELLS = 160; // larger groups are treated as if they touched no number
+	private static final int MAX_STATES = 1 << 16; // states allowed at one step of counting a group
+	private static final int MAX_OPEN = 15; // numbers a group may have partly counted at once, 4 bits each in a long
+
+	private final PlayerView view;
+	private final Solver solver;
+	private Map<Signature, Counts> counts = new HashMap<>(); // counts of the groups of the last computation
+	private double[] probabilities;
+	private boolean exact;
+	private long recounted; // groups counted since the engine was created
+
+	/**
+	 * @param view - the board to compute the probabilities of
+	 */
+	public ProbabilityEngine(PlayerView view) {
+		this.view = view;
+		this.solver = new Solver(view);
+	}
+
+	/**
+	 * Updates the engine with the cells changed by a move. Must be called after every move
+	 * @param cells - the indexes of the changed cells
+	 */
+	public void cellsChanged(int[] cells) {
+		solver.cellsChanged(cells);
+		probabilities = null;
+	}
+
+	/**
+	 * @return for each cell the probability it is a mine, NaN for revealed cells
+	 */
+	public double[] getProbabilities() {
+		if(probabilities == null){
+			probabilities = compute();
+		}
+		return probabilities;
+	}
+
+	/**
+	 * @return false if a group was too large to count and was treated as touching no number
+	 */
+	public boolean isExact() {
+		getProbabilities();
+		return exact;
+	}
+
+	/**
+	 * @return the number of groups counted rather than reused since the engine was created
+	 */
+	public long getRecounted() {
+		return recounted;
+	}
+
+	private double[] compute() {
+		solver.deduceAll();
+		int size = view.size();
+		double[] result = new double[size];
+		Arrays.fill(result, Double.NaN);
+		int left = view.getMineCount() - solver.getKnownMines();
+
+		List<int[]> large = new ArrayList<>();
+		List<Solver.Component> components = solver.components(MAX_CELLS, large);
+		exact = large.isEmpty();
+
+		// count each group, reusing the counts of groups no move has touched
+		Map<Signature, Counts> next = new HashMap<>();
+		List<Counts> groups = new ArrayList<>();
+		boolean[] inGroup = new boolean[size];
+		for(Solver.Component component : components) {
+			Signature signature = new Signature(component);
+			Counts count = counts.get(signature);
+			if(count == null || count.maxMines < Math.min(left, component.cells.length)){
+				count = Counts.of(component, left);
+				recounted++;
+			}
+			if(count == Counts.TOO_LARGE){
+				next.put(signature, count); // not tried again until a move changes the group
+				exact = false;
+				large.add(component.cells);
+				continue;
+			}
+			next.put(signature, count);
+			groups.add(count);
+			for(int cell : component.cells) {
+				inGroup[cell] = true;
+			}
+		}
+		counts = next;
+
+		int others = 0; // covered cells that touch no number, or belong to a group too large to count
+		for(int cell = 0; cell < size; cell++) {
+			if(solver.isKnownMine(cell)){
+				result[cell] = 1;
+			}else if(solver.isKnownSafe(cell) && view.getState(cell) != Board.REVEALED){
+				result[cell] = 0;
+			}else if(solver.isUnknown(cell) && !inGroup[cell]){
+				others++;
+			}
+		}
+
+		// ways[m] is the relative weight of the frontier holding m mines, including every way to place the rest
+		int most = 0;
+		for(Counts group : groups) {
+			most += group.ways.length - 1;
+		}
+		most = Math.min(most, left);
+		double[] weight = new double[most + 1];
+		double maxLog = Double.NEGATIVE_INFINITY;
+		for(int m = 0; m <= most; m++) {
+			weight[m] = left - m <= others ? logChoose(others, left - m) : Double.NEGATIVE_INFINITY;
+			maxLog = Math.max(maxLog, weight[m]);
+		}
+		if(maxLog == Double.NEGATIVE_INFINITY){
+			return result; // too few cells left for the mines
+		}
+		for(int m = 0; m <= most; m++) {
+			weight[m] = Math.exp(weight[m] - maxLog);
+		}
+
+		// the combined ways of every group but one are built from prefix and suffix products
+		int n = groups.size();
+		double[][] prefix = new double[n + 1][], suffix = new double[n + 1][];
+		prefix[0] = new double[]{1};
+		for(int g = 0; g < n; g++) {
+			prefix[g + 1] = convolve(prefix[g], groups.get(g).ways, most);
+		}
+		suffix[n] = new double[]{1};
+		for(int g = n - 1; g >= 0; g--) {
+			suffix[g] = convolve(suffix[g + 1], groups.get(g).ways, most);
+		}
+		double total = 0, othersMines = 0;
+		for(int m = 0; m < prefix[n].length; m++) {
+			total += prefix[n][m] * weight[m];
+			othersMines += prefix[n][m] * weight[m] * (left - m);
+		}
+		if(total == 0){
+			return result; // the numbers contradict each other
+		}
+
+		for(int g = 0; g < n; g++) {
+			Counts group = groups.get(g);
+			double[] rest = convolve(prefix[g], suffix[g + 1], most);
+			// restWeight[k] is the weight of this group holding k mines
+			double[] restWeight = new double[group.ways.length];
+			for(int k = 0; k < restWeight.length; k++) {
+				for(int m = 0; m < rest.length && k + m <= most; m++) {
+					restWeight[k] += rest[m] * weight[k + m];
+				}
+			}
+			for(int i = 0; i < group.cells.length; i++) {
+				double mine = 0;
+				for(int k = 0; k < restWeight.length; k++) {
+					mine += group.mineIn[k][i] * restWeight[k];
+				}
+				result[group.cells[i]] = mine / total;
+			}
+		}
+		double other = others == 0 ? 0 : othersMines / total / others;
+		for(int cell = 0; cell < size; cell++) {
+			if(solver.isUnknown(cell) && !inGroup[cell]){
+				result[cell] = other;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the ways of two independent sets of cells together holding each number of mines, up to the given most
+	 */
+	private static double[] convolve(double[] a, double[] b, int most) {
+		double[] out = new double[Math.min(a.length + b.length - 1, most + 1)];
+		for(int i = 0; i < a.length && i < out.length; i++) {
+			if(a[i] == 0){
+				continue;
+			}
+			for(int j = 0; j < b.length && i + j < out.length; j++) {
+				out[i + j] += a[i] * b[j];
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * @return the sum of the ways of two sets of arrangements by mines used
+	 */
+	private static double[] add(double[] a, double[] b) {
+		double[] sum = Arrays.copyOf(a.length >= b.length ? a : b, Math.max(a.length, b.length));
+		double[] other = a.length >= b.length ? b : a;
+		for(int m = 0; m < other.length; m++) {
+			sum[m] += other[m];
+		}
+		return sum;
+	}
+
+	private static double logChoose(int n, int k) {
+		double log = 0;
+		k = Math.min(k, n - k);
+		for(int i = 0; i < k; i++) {
+			log += Math.log(n - i) - Math.log(i + 1);
+		}
+		return log;
+	}
+
+	/**
+	 * The arrangements of one group counted by the number of mines they use
+	 */
+	private static class Counts {
+
+		static final Counts TOO_LARGE = new Counts(new int[0], Integer.MAX_VALUE, new double[]{1}, new double[1][0]);
+
+		final int[] cells;
+		final int maxMines; // most mines the arrangements were allowed to use
+		final double[] ways; // ways[k] is the number of arrangements with k mines
+		final double[][] mineIn; // mineIn[k][i] is the number of arrangements with k mines where cell i is a mine
+
+		private Counts(int[] cells, int maxMines, double[] ways, double[][] mineIn) {
+			this.cells = cells;
+			this.maxMines = maxMines;
+			this.ways = ways;
+			this.mineIn = mineIn;
+		}
+
+		/**
+		 * Counts the arrangements of the group by deciding its cells in order, see {@link #walk(Solver.Component)}.
+		 * A state holds the mines placed
+		 * around each open number, one whose first cell has been decided and last cell has not, 4 bits per number
+		 * in the order of the open list of that step. Each state maps to the ways of reaching it by mines used.
+		 * Counting forwards and then backwards over the same states gives, for every cell, the arrangements where
+		 * it is a mine
+		 * @return the counts of the group or TOO_LARGE if too many numbers were open at once or there were too
+		 * many states
+		 */
+		static Counts of(Solver.Component component, int left) {
+			int cellCount = component.cells.length, numberCount = component.numbers.length;
+			int maxMines = Math.min(left, cellCount);
+
+			// the cells renumbered in the order they are decided
+			int[] order = walk(component);
+			int[] position = new int[cellCount];
+			int[] cells = new int[cellCount];
+			for(int i = 0; i < cellCount; i++) {
+				position[order[i]] = i;
+				cells[i] = component.cells[order[i]];
+			}
+			int[][] numberCells = new int[numberCount][];
+			for(int n = 0; n < numberCount; n++) {
+				numberCells[n] = new int[component.numberCells[n].length];
+				for(int k = 0; k < numberCells[n].length; k++) {
+					numberCells[n][k] = position[component.numberCells[n][k]];
+				}
+			}
+
+			// first and last cell of each number, and the numbers open between each step
+			int[] first = new int[numberCount], last = new int[numberCount];
+			int[][] cellNumbers = new int[cellCount][];
+			int[] touching = new int[cellCount];
+			for(int n = 0; n < numberCount; n++) {
+				first[n] = cellCount;
+				last[n] = -1;
+				for(int cell : numberCells[n]) {
+					first[n] = Math.min(first[n], cell);
+					last[n] = Math.max(last[n], cell);
+					touching[cell]++;
+				}
+			}
+			for(int i = 0; i < cellCount; i++) {
+				cellNumbers[i] = new int[touching[i]];
+				touching[i] = 0;
+			}
+			for(int n = 0; n < numberCount; n++) {
+				for(int cell : numberCells[n]) {
+					cellNumbers[cell][touching[cell]++] = n;
+				}
+			}
+			// slot[i][n] is the position of number n in the state before cell i is decided, or -1 if not open
+			int[][] slot = new int[cellCount + 1][numberCount];
+			for(int i = 0; i <= cellCount; i++) {
+				int open = 0;
+				for(int n = 0; n < numberCount; n++) {
+					slot[i][n] = first[n] < i && i <= last[n] ? open++ : -1;
+				}
+				if(open > MAX_OPEN){
+					return TOO_LARGE;
+				}
+			}
+
+			List<Map<Long, double[]>> forward = new ArrayList<>(cellCount + 1);
+			Map<Long, double[]> start = new HashMap<>();
+			start.put(0L, new double[]{1});
+			forward.add(start);
+			for(int i = 0; i < cellCount; i++) {
+				Map<Long, double[]> next = new HashMap<>();
+				for(Map.Entry<Long, double[]> entry : forward.get(i).entrySet()) {
+					for(int mine = 0; mine < 2; mine++) {
+						long to = step(component, cellNumbers, last, slot, i, entry.getKey(), mine);
+						if(to >= 0){
+							double[] ways = shift(entry.getValue(), mine, maxMines);
+							if(ways != null){
+								next.merge(to, ways, ProbabilityEngine::add);
+							}
+						}
+					}
+				}
+				if(next.size() > MAX_STATES){
+					return TOO_LARGE;
+				}
+				forward.add(next);
+			}
+
+			double[] total = forward.get(cellCount).getOrDefault(0L, new double[]{0});
+			double[][] mineIn = new double[total.length][cellCount];
+			Map<Long, double[]> backward = start; // the ways from each state to the end, nothing is left after the last cell
+			for(int i = cellCount - 1; i >= 0; i--) {
+				Map<Long, double[]> previous = new HashMap<>();
+				for(Map.Entry<Long, double[]> entry : forward.get(i).entrySet()) {
+					double[] ways = null;
+					for(int mine = 0; mine < 2; mine++) {
+						long to = step(component, cellNumbers, last, slot, i, entry.getKey(), mine);
+						double[] after = to >= 0 ? backward.get(to) : null;
+						if(after == null){
+							continue;
+						}
+						after = shift(after, mine, maxMines);
+						if(after == null){
+							continue;
+						}
+						ways = ways == null ? after : add(ways, after);
+						if(mine == 1){
+							double[] both = convolve(entry.getValue(), after, total.length - 1);
+							for(int k = 0; k < both.length; k++) {
+								mineIn[k][i] += both[k];
+							}
+						}
+					}
+					if(ways != null){
+						previous.put(entry.getKey(), ways);
+					}
+				}
+				backward = previous;
+			}
+			return new Counts(cells, maxMines, total, mineIn);
+		}
+
+		/**
+		 * Orders the cells of a group by walking along it from the cell with the lowest board index, taking the
+		 * cells sharing a number with each cell in board order. The order only depends on the cells and numbers of
+		 * the group, not on where the solver started collecting it, so whether a group is small enough to count
+		 * comes out the same however the position was reached. Walking along the group also keeps the numbers open
+		 * at once to the few at the front of the walk
+		 * @return the indexes into the group's cells in the order they are decided
+		 */
+		private static int[] walk(Solver.Component component) {
+			int cellCount = component.cells.length;
+			List<List<Integer>> numbersOf = new ArrayList<>(cellCount);
+			for(int i = 0; i < cellCount; i++) {
+				numbersOf.add(new ArrayList<>());
+			}
+			for(int n = 0; n < component.numberCells.length; n++) {
+				for(int cell : component.numberCells[n]) {
+					numbersOf.get(cell).add(n);
+				}
+			}
+			int first = 0;
+			for(int i = 1; i < cellCount; i++) {
+				if(component.cells[i] < component.cells[first]){
+					first = i;
+				}
+			}
+			int[] order = new int[cellCount];
+			boolean[] seen = new boolean[cellCount];
+			int size = 0;
+			order[size++] = first;
+			seen[first] = true;
+			Integer[] reached = new Integer[cellCount];
+			for(int next = 0; next < size; next++) {
+				int count = 0;
+				for(int n : numbersOf.get(order[next])) {
+					for(int cell : component.numberCells[n]) {
+						if(!seen[cell]){
+							seen[cell] = true;
+							reached[count++] = cell;
+						}
+					}
+				}
+				Arrays.sort(reached, 0, count, (a, b) -> Integer.compare(component.cells[a], component.cells[b]));
+				for(int k = 0; k < count; k++) {
+					order[size++] = reached[k];
+				}
+			}
+			// groups are connected through their numbers, this only guards against one that is not
+			for(int i = 0; i < cellCount && size < cellCount; i++) {
+				if(!seen[i]){
+					order[size++] = i;
+				}
+			}
+			return order;
+		}
+
+		/**
+		 * Decides one cell of the group
+		 * @param i - the cell being decided
+		 * @param state - the mines placed around each number open before the cell
+		 * @param mine - 1 if the cell is a mine, 0 if it is safe
+		 * @return the state after the cell, or -1 if a number can no longer be satisfied
+		 */
+		private static long step(Solver.Component component, int[][] cellNumbers, int[] last, int[][] slot, int i,
+				long state, int mine) {
+			int[] before = slot[i], after = slot[i + 1];
+			long next = 0;
+			for(int n = 0; n < before.length; n++) {
+				if(before[n] >= 0 && after[n] >= 0){
+					next |= (state >>> (before[n] * 4) & 0xF) << (after[n] * 4);
+				}
+			}
+			for(int n : cellNumbers[i]) {
+				int placed = (before[n] >= 0 ? (int) (state >>> (before[n] * 4) & 0xF) : 0) + mine;
+				if(placed > component.numberMines[n]){
+					return -1;
+				}
+				if(last[n] == i){
+					if(placed != component.numberMines[n]){
+						return -1;
+					}
+				}else{
+					next = next & ~(0xFL << (after[n] * 4)) | (long) placed << (after[n] * 4);
+				}
+			}
+			return next;
+		}
+
+		/**
+		 * @return the ways shifted up by the mines of one cell, or null if no arrangement stays within maxMines
+		 */
+		private static double[] shift(double[] ways, int mine, int maxMines) {
+			if(mine == 0){
+				return ways;
+			}
+			int length = Math.min(ways.length + 1, maxMines + 1);
+			if(length <= 1){
+				return null;
+			}
+			double[] shifted = new double[length];
+			System.arraycopy(ways, 0, shifted, 1, length - 1);
+			return shifted;
+		}
+	}
+
+	/**
+	 * Identifies a group by its cells and the numbers around it with the mines they still miss, which together
+	 * decide every arrangement of the group. Both are sorted since the order a group is collected in depends on
+	 * where the search started
+	 */
+	private static class Signature {
+
+		private final int[] key;
+		private final int hash;
+
+		Signature(Solver.Component component) {
+			int cells = component.cells.length, numbers = component.numbers.length;
+			key = new int[cells + numbers];
+			System.arraycopy(component.cells, 0, key, 0, cells);
+			Arrays.sort(key, 0, cells);
+			// a number's cell index and missing mines packed together, the index in the high bits to sort by
+			long[] packed = new long[numbers];
+			for(int n = 0; n < numbers; n++) {
+				packed[n] = (long) component.numbers[n] << 4 | component.numberMines[n];
+			}
+			Arrays.sort(packed);
+			for(int n = 0; n < numbers; n++) {
+				key[cells + n] = (int) ~packed[n];
+			}
+			hash = Arrays.hashCode(key) * 31 + cells;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Signature && Arrays.equals(key, ((Signature) other).key);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
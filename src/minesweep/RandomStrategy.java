@@ -0,0 +1,40 @@
+package minesweep;
+
+import java.util.SplittableRandom;
+
+/**
+ * Move strategy that opens in the middle of the board and then reveals covered cells at random. Gives a baseline
+ * to compare smarter strategies against.
+ * @author Martin Wallace
+ */
+public class RandomStrategy implements MoveStrategy {
+
+	private static final int TRIES = 64; // random picks before falling back to a scan for a covered cell
+
+	@Override
+	public int nextMove(PlayerView view, SplittableRandom random) {
+		if(view.getState(view.index(view.getRows() / 2, view.getCols() / 2)) == Board.COVERED){
+			return view.index(view.getRows() / 2, view.getCols() / 2);
+		}
+		for(int i = 0; i < TRIES; i++) {
+			int cell = random.nextInt(view.size());
+			if(view.getState(cell) == Board.COVERED){
+				return cell;
+			}
+		}
+		// few covered cells are left, pick one of them uniformly
+		int covered = 0;
+		for(int cell = 0; cell < view.size(); cell++) {
+			if(view.getState(cell) == Board.COVERED){
+				covered++;
+			}
+		}
+		int pick = random.nextInt(covered);
+		for(int cell = 0; cell < view.size(); cell++) {
+			if(view.getState(cell) == Board.COVERED && pick-- == 0){
+				return cell;
+			}
+		}
+		throw new IllegalStateException("No covered cell left to reveal");
+	}
+}
@@ -0,0 +1,497 @@
+package minesweep;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Compact binary recordings of games. A game is stored as what its mines were generated from followed by every
+ * press and release on the board as varints, so a typical expert game takes well under a kilobyte.
+ * <p>
+ * A replay file starts with {@link #MAGIC} and holds any number of games one after the other, each prefixed by its
+ * length in bytes so a reader can skip games without decoding them. A game holds:
+ * <ul>
+ * <li>rows, cols and mines</li>
+ * <li>the start time in seconds since the epoch</li>
+ * <li>the board source: {@code 0} followed by the 8 byte seed and the canonical start the mines were placed around
+ * plus one, 0 if they were placed around the first click, or {@code 1} followed by the gaps between mine indexes
+ * for boards with no seed</li>
+ * <li>one varint per event holding {@code cell << 2 | action}, followed by the milliseconds since the last event
+ * for presses and releases, or by the cells revealed at the end for {@link #END}</li>
+ * </ul>
+ * Games are decoded one at a time from a stream, so files of any size can be read.
+ * <p>
+ * Usage: {@code Replay <file>...} plays every game headlessly at full speed and reports any game whose replayed
+ * result differs from the recorded one.
+ * @author Martin Wallace
+ */
+public class Replay {
+
+	static final byte[] MAGIC = {'M', 'S', 'R', 'P', 1}; // first bytes of a replay file, the last one is the version
+
+	// actions of an event, the low 2 bits of its first varint
+	static final int LEFT = 0, RIGHT = 1, RELEASE = 2, END = 3;
+	// results stored in the cell of the END event
+	static final int ABANDONED = 0, WON = 1, LOST = 2;
+
+	private static final byte SEEDED = 0, LISTED = 1; // board sources
+
+	/**
+	 * Main Method to verify replay files
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0){
+			System.err.println("Usage: Replay <file>...");
+			System.exit(2);
+		}
+		long start = System.nanoTime();
+		int games = 0, mismatches = 0;
+		for(String file : args) {
+			try(Reader reader = new Reader(Files.newInputStream(Paths.get(file)))) {
+				Game game;
+				while((game = reader.next()) != null) {
+					Playback playback = game.play();
+					games++;
+					if(playback.result != game.result || playback.board.getRevealedCount() != game.revealed){
+						mismatches++;
+						System.out.printf("%s game %d (%dx%dx%d, %s): recorded %s with %d cells revealed, replayed %s"
+								+ " with %d%n", file, games, game.rows, game.cols, game.mines, Instant.ofEpochSecond(game.startTime),
+								name(game.result), game.revealed, name(playback.result), playback.board.getRevealedCount());
+					}
+				}
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games replayed in %.3f s (%.0f games/s), %d mismatches%n", games, seconds,
+				games / seconds, mismatches);
+		System.exit(mismatches == 0 ? 0 : 1);
+	}
+
+	private static String name(int result) {
+		return result == WON ? "won" : result == LOST ? "lost" : "abandoned";
+	}
+
+	/**
+	 * @param directory - the directory replays are kept in
+	 * @return the file games started today are appended to
+	 */
+	static Path dailyFile(Path directory) {
+		return directory.resolve(LocalDate.now(ZoneId.systemDefault()) + ".replay");
+	}
+
+	/**
+	 * Appends a recorded game to a replay file, writing the magic first if the file is new. The file is locked while
+	 * the game is written so games recorded by several processes at once neither interleave nor both write the magic.
+	 * Synchronized since a process may only hold one lock on a file
+	 * @param file - the replay file
+	 * @param game - the encoded game from {@link Recorder#finish(int, int)}
+	 */
+	static synchronized void append(Path file, byte[] game) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		if(directory != null){
+			Files.createDirectories(directory);
+		}
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			channel.lock(); // released when the channel is closed
+			ByteArrayOutputStream out = new ByteArrayOutputStream(game.length + 10);
+			if(channel.size() == 0){
+				out.write(MAGIC);
+			}
+			writeVarint(out, game.length);
+			out.write(game);
+			ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Records the events of one game as they happen
+	 */
+	static class Recorder {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		private long lastEvent; // time of the last event in milliseconds
+
+		/**
+		 * Starts recording a game whose mines were placed from a seed
+		 * @param values - rows, cols and mines of the board
+		 * @param seed - the seed the mines were placed from
+		 * @param origin - the canonical start the mines were placed around before being moved to the first click,
+		 * or -1 if they were placed around the first click
+		 * @param now - the time of the first click in milliseconds
+		 */
+		Recorder(int[] values, long seed, int origin, long now) {
+			header(values, now);
+			out.write(SEEDED);
+			for(int shift = 56; shift >= 0; shift -= 8) {
+				out.write((int) (seed >>> shift));
+			}
+			writeVarint(out, origin + 1);
+		}
+
+		/**
+		 * Starts recording a game whose mines were not placed from a seed, storing every mine instead
+		 * @param values - rows, cols and mines of the board
+		 * @param board - the board holding the mines
+		 * @param now - the time of the first click in milliseconds
+		 */
+		Recorder(int[] values, Board board, long now) {
+			header(values, now);
+			out.write(LISTED);
+			int previous = -1;
+			for(int mine = board.nextMine(0); mine >= 0; mine = board.nextMine(mine + 1)) {
+				writeVarint(out, mine - previous - 1);
+				previous = mine;
+			}
+		}
+
+		private void header(int[] values, long now) {
+			writeVarint(out, values[MineSweeper.ROW]);
+			writeVarint(out, values[MineSweeper.COL]);
+			writeVarint(out, values[MineSweeper.MINES]);
+			writeVarint(out, now / 1000);
+			lastEvent = now;
+		}
+
+		/**
+		 * Records a press or release
+		 * @param cell - the index of the cell, ignored for releases
+		 * @param action - LEFT, RIGHT or RELEASE
+		 * @param now - the time of the event in milliseconds
+		 */
+		void event(int cell, int action, long now) {
+			writeVarint(out, (long) (action == RELEASE ? 0 : cell) << 2 | action);
+			writeVarint(out, Math.max(now - lastEvent, 0));
+			lastEvent = now;
+		}
+
+		/**
+		 * Ends the recording
+		 * @param result - WON, LOST or ABANDONED
+		 * @param revealed - the number of safe cells revealed
+		 * @return the encoded game
+		 */
+		byte[] finish(int result, int revealed) {
+			writeVarint(out, (long) result << 2 | END);
+			writeVarint(out, revealed);
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Reads the games of a replay file one at a time
+	 */
+	static class Reader implements Closeable {
+
+		private final InputStream in;
+		private boolean started;
+
+		/**
+		 * @param in - the replay file, closed along with the reader
+		 */
+		Reader(InputStream in) {
+			this.in = new BufferedInputStream(in);
+		}
+
+		/**
+		 * @return the next game or null at the end of the file. A game cut short by a crash is treated as the end
+		 */
+		Game next() throws IOException {
+			if(!started){
+				byte[] magic = new byte[MAGIC.length];
+				if(readFully(magic) < magic.length || !Arrays.equals(magic, MAGIC)){
+					throw new IOException("Not a replay file");
+				}
+				started = true;
+			}
+			int first = in.read();
+			if(first < 0){
+				return null;
+			}
+			long length = first & 0x7F;
+			for(int shift = 7; (first & 0x80) != 0; shift += 7) {
+				first = in.read();
+				if(first < 0){
+					return null;
+				}
+				length |= (long) (first & 0x7F) << shift;
+			}
+			if(length > Integer.MAX_VALUE){
+				throw new IOException("Game of " + length + " bytes");
+			}
+			byte[] bytes = new byte[(int) length];
+			if(readFully(bytes) < bytes.length){
+				return null;
+			}
+			return new Game(bytes);
+		}
+
+		private int readFully(byte[] bytes) throws IOException {
+			int read = 0;
+			while(read < bytes.length) {
+				int n = in.read(bytes, read, bytes.length - read);
+				if(n < 0){
+					break;
+				}
+				read += n;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * A decoded game header along with its undecoded events
+	 */
+	static class Game {
+
+		final int rows, cols, mines;
+		final long startTime; // seconds since the epoch
+		final long seed;
+		final int origin; // canonical start the mines were placed around, -1 for the first click
+		final int[] mineCells; // every mine when the board has no seed, null otherwise
+		final int result, revealed; // as recorded at the end of the game
+		private final byte[] bytes;
+		private final int events; // offset of the first event
+
+		/**
+		 * @param bytes - one encoded game without its length
+		 */
+		Game(byte[] bytes) throws IOException {
+			this.bytes = bytes;
+			int[] pos = {0};
+			long rows = readVarint(bytes, pos), cols = readVarint(bytes, pos), mines = readVarint(bytes, pos);
+			if(rows <= 0 || cols <= 0 || rows > Integer.MAX_VALUE || cols > Integer.MAX_VALUE
+					|| rows * cols > Integer.MAX_VALUE || mines < 0 || mines > rows * cols){
+				throw new IOException("Bad board " + rows + "x" + cols + " with " + mines + " mines");
+			}
+			this.rows = (int) rows;
+			this.cols = (int) cols;
+			this.mines = (int) mines;
+			int size = this.rows * this.cols;
+			startTime = readVarint(bytes, pos);
+			if(pos[0] >= bytes.length){
+				throw new EOFException("Game ends in its header");
+			}
+			byte source = bytes[pos[0]++];
+			if(source == SEEDED){
+				long value = 0;
+				for(int i = 0; i < 8; i++) {
+					if(pos[0] >= bytes.length){
+						throw new EOFException("Game ends in its seed");
+					}
+					value = value << 8 | (bytes[pos[0]++] & 0xFF);
+				}
+				seed = value;
+				long start = readVarint(bytes, pos) - 1;
+				if(start < -1 || start >= size){
+					throw new IOException("Canonical start " + start + " is outside the board");
+				}
+				origin = (int) start;
+				mineCells = null;
+			}else if(source == LISTED){
+				seed = 0;
+				origin = -1;
+				if(this.mines > bytes.length - pos[0]){
+					throw new EOFException("Game ends in its mines"); // each gap takes at least a byte
+				}
+				mineCells = new int[this.mines];
+				int previous = -1;
+				for(int i = 0; i < mineCells.length; i++) {
+					long gap = readVarint(bytes, pos);
+					if(gap < 0 || gap >= size - 1 - previous){
+						throw new IOException("Mine " + (i + 1) + " of " + this.mines + " is outside the board");
+					}
+					previous += (int) gap + 1;
+					mineCells[i] = previous;
+				}
+			}else{
+				throw new IOException("Unknown board source " + source);
+			}
+			events = pos[0];
+			// the end of the game is read up front so the result is known without replaying it
+			Events cursor = events();
+			while(cursor.next()) {
+				// skip to the end
+			}
+			result = cursor.result;
+			revealed = cursor.revealed;
+		}
+
+		/**
+		 * @return rows, cols and mines of the board
+		 */
+		int[] values() {
+			return new int[]{rows, cols, mines};
+		}
+
+		/**
+		 * @return a cursor over the presses and releases of the game
+		 */
+		Events events() {
+			return new Events(bytes, events);
+		}
+
+		/**
+		 * Places the mines of the game on an empty board the same way they were placed when it was played
+		 * @param board - the empty board
+		 * @param first - the index of the first click
+		 */
+		void placeMines(Board board, int first) {
+			if(mineCells != null){
+				for(int mine : mineCells) {
+					board.setMine(mine);
+				}
+			}else if(origin >= 0){
+				BoardPool.place(new BoardPool.PooledBoard(values(), seed, origin), first, board);
+			}else{
+				board.placeMines(mines, first, new SplittableRandom(seed)::nextInt);
+			}
+		}
+
+		/**
+		 * Plays the game headlessly at full speed, following the same rules as a game played on screen
+		 * @return the board at the end of the game and how long it took
+		 */
+		Playback play() throws IOException {
+			Board board = new Board(rows, cols);
+			Events cursor = events();
+			boolean started = false;
+			long elapsed = 0, duration = 0;
+			while(!board.isLost() && !board.isWon() && cursor.next()) {
+				elapsed += cursor.delay;
+				if(cursor.action == RELEASE){
+					continue;
+				}
+				if(cursor.cell < 0 || cursor.cell >= board.size()){
+					throw new IOException("Cell " + cursor.cell + " is outside of the board");
+				}
+				if(!started){
+					if(cursor.action == LEFT){
+						placeMines(board, cursor.cell);
+						board.computeCounts();
+						board.reveal(cursor.cell);
+						started = true;
+						elapsed = 0;
+					}
+				}else if(cursor.action == RIGHT){
+					board.toggleFlag(cursor.cell);
+				}else{
+					board.open(cursor.cell);
+				}
+				duration = elapsed;
+			}
+			int result = board.isWon() ? WON : board.isLost() ? LOST : ABANDONED;
+			return new Playback(board, result, duration);
+		}
+	}
+
+	/**
+	 * The outcome of a game played back headlessly
+	 */
+	static class Playback {
+
+		final Board board;
+		final int result;
+		final long duration; // milliseconds from the first click to the last move
+
+		Playback(Board board, int result, long duration) {
+			this.board = board;
+			this.result = result;
+			this.duration = duration;
+		}
+	}
+
+	/**
+	 * Decodes the events of a game one at a time without allocating
+	 */
+	static class Events {
+
+		private final byte[] bytes;
+		private final int[] pos;
+		int cell, action; // the current event
+		long delay; // milliseconds since the previous event
+		int result, revealed; // set once the end of the game has been read
+
+		private Events(byte[] bytes, int offset) {
+			this.bytes = bytes;
+			this.pos = new int[]{offset};
+		}
+
+		/**
+		 * Moves to the next press or release
+		 * @return false at the end of the game
+		 */
+		boolean next() throws IOException {
+			if(pos[0] >= bytes.length){
+				return false; // a game recorded without an end is treated as abandoned
+			}
+			long event = readVarint(bytes, pos);
+			action = (int) (event & 3);
+			if(action == END){
+				result = (int) (event >>> 2);
+				revealed = (int) readVarint(bytes, pos);
+				pos[0] = bytes.length;
+				return false;
+			}
+			cell = (int) (event >>> 2);
+			delay = readVarint(bytes, pos);
+			return true;
+		}
+	}
+
+	/**
+	 * Writes an unsigned value 7 bits at a time, lowest first, with the top bit of each byte set if more follow
+	 */
+	static void writeVarint(OutputStream out, long value) {
+		try {
+			while((value & ~0x7FL) != 0) {
+				out.write((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.write((int) value);
+		} catch(IOException e) {
+			throw new IllegalStateException(e); // only written to in-memory streams
+		}
+	}
+
+	/**
+	 * Reads a value written by {@link #writeVarint(OutputStream, long)}
+	 * @param pos - the offset to read from, moved past the value
+	 */
+	static long readVarint(byte[] bytes, int[] pos) throws IOException {
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7) {
+			if(pos[0] >= bytes.length){
+				throw new EOFException("Varint runs past the end of the game");
+			}
+			byte b = bytes[pos[0]++];
+			value |= (long) (b & 0x7F) << shift;
+			if(b >= 0){
+				return value;
+			}
+		}
+		throw new IOException("Varint is too long");
+	}
+}
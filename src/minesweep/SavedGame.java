@@ -0,0 +1,207 @@
+package minesweep;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves a game in progress to a file and restores it. The file holds a small header, the mines as one bit per cell
+ * and the state of every cell packed into 2 bits, 4 cells to a byte, followed by a checksum of everything before it:
+ * <ul>
+ * <li>{@link #MAGIC}</li>
+ * <li>rows, cols and mines as ints, the difficulty as an int or -1 for a custom board and the elapsed milliseconds
+ * as a long</li>
+ * <li>the mines as little endian longs, bit {@code i % 64} of long {@code i / 64} set if cell {@code i} is a mine</li>
+ * <li>the cell states, cell {@code i} in bits {@code 2 * (i % 4)} of byte {@code i / 4}</li>
+ * <li>the CRC32 of all of the above as an int</li>
+ * </ul>
+ * Everything goes through a {@link FileChannel} a buffer at a time, so a board with millions of cells takes a few
+ * milliseconds. Saves are written to a temporary file renamed over the old one, so a crash while saving leaves the
+ * previous save intact.
+ * @author Martin Wallace
+ */
+public class SavedGame {
+
+	static final byte[] MAGIC = {'M', 'S', 'S', 'V', 1}; // first bytes of a save file, the last one is the version
+
+	private static final int HEADER = MAGIC.length + 4 * 4 + 8;
+	private static final int BUFFER = 1 << 20; // bytes moved through the channel at a time
+
+	final int difficulty; // index into MineSweeper.VALUES or -1 for a custom board
+	final long elapsed; // milliseconds the game had been played for
+	final Board board;
+
+	/**
+	 * @param difficulty - index into MineSweeper.VALUES or -1 for a custom board
+	 * @param elapsed - milliseconds the game had been played for
+	 * @param board - the board with its mines placed and counts computed
+	 */
+	SavedGame(int difficulty, long elapsed, Board board) {
+		this.difficulty = difficulty;
+		this.elapsed = elapsed;
+		this.board = board;
+	}
+
+	/**
+	 * Writes the game to a file, replacing any save already there
+	 * @param path - the file to write
+	 */
+	void write(Path path) throws IOException {
+		Path dir = path.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+				CRC32 crc = new CRC32();
+				buffer.put(MAGIC);
+				buffer.putInt(board.getRows()).putInt(board.getCols()).putInt(board.getMineCount()).putInt(difficulty);
+				buffer.putLong(elapsed);
+
+				long[] words = board.mineWords();
+				int wordCount = (board.size() + 63) / 64;
+				for(int w = 0; w < wordCount; w++) {
+					if(buffer.remaining() < 8){
+						flush(channel, buffer, crc);
+					}
+					buffer.putLong(w < words.length ? words[w] : 0);
+				}
+
+				int size = board.size();
+				for(int cell = 0; cell < size; cell += 4) {
+					if(!buffer.hasRemaining()){
+						flush(channel, buffer, crc);
+					}
+					int packed = 0;
+					for(int k = 0; k < 4 && cell + k < size; k++) {
+						packed |= board.getState(cell + k) << (2 * k);
+					}
+					buffer.put((byte) packed);
+				}
+				flush(channel, buffer, crc);
+				buffer.putInt((int) crc.getValue());
+				flush(channel, buffer, null);
+				channel.force(true);
+			}
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Writes out what has been put in the buffer and empties it
+	 * @param crc - the checksum to add the bytes to, or null
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+		buffer.flip();
+		if(crc != null){
+			crc.update(buffer.duplicate());
+		}
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Reads a game saved with {@link #write(Path)}
+	 * @param path - the file to read
+	 * @return the game with its board restored and counts computed. No listener is set on the board
+	 * @throws IOException if the file can not be read, is not a save file or fails its checksum
+	 */
+	static SavedGame read(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+			CRC32 crc = new CRC32();
+			buffer.limit(0);
+			fill(channel, buffer, crc, HEADER, HEADER);
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get(magic);
+			for(int i = 0; i < magic.length; i++) {
+				if(magic[i] != MAGIC[i]){
+					throw new IOException("Not a save file");
+				}
+			}
+			int rows = buffer.getInt(), cols = buffer.getInt(), mines = buffer.getInt(), difficulty = buffer.getInt();
+			long elapsed = buffer.getLong();
+			if(rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE){
+				throw new IOException("Invalid board size " + rows + "x" + cols);
+			}
+			long end = HEADER + ((long) rows * cols + 63) / 64 * 8 + ((long) rows * cols + 3) / 4; // where the checksum starts
+			if(channel.size() != end + 4){
+				throw new IOException("Save file is " + channel.size() + " bytes, expected " + (end + 4));
+			}
+
+			Board board = new Board(rows, cols);
+			int size = board.size();
+			long[] words = new long[(size + 63) / 64];
+			for(int w = 0; w < words.length; w++) {
+				fill(channel, buffer, crc, 8, end);
+				words[w] = buffer.getLong();
+			}
+			board.loadMines(words);
+			if(board.getMineCount() != mines){
+				throw new IOException("Save file holds " + board.getMineCount() + " mines, expected " + mines);
+			}
+
+			for(int cell = 0; cell < size; ) {
+				fill(channel, buffer, crc, 1, end);
+				for(; buffer.hasRemaining() && cell < size; cell += 4) {
+					int packed = buffer.get();
+					// covered cells are 0 so most bytes of an early game have nothing to restore
+					for(int k = 0; packed != 0 && k < 4 && cell + k < size; k++) {
+						int state = packed >> (2 * k) & 3;
+						if(state != Board.COVERED){
+							board.restoreState(cell + k, state);
+						}
+					}
+				}
+			}
+			int checksum = (int) crc.getValue();
+			fill(channel, buffer, null, 4, end + 4);
+			if(buffer.getInt() != checksum){
+				throw new IOException("Save file fails its checksum");
+			}
+			board.computeCounts();
+			return new SavedGame(difficulty, elapsed, board);
+		}
+	}
+
+	/**
+	 * Makes sure the buffer has at least the given number of bytes left to get, reading more from the channel
+	 * @param crc - the checksum to add the bytes read to, or null
+	 * @param end - the file offset reads stop at, so the checksum only covers the bytes it was computed over
+	 */
+	private static void fill(FileChannel channel, ByteBuffer buffer, CRC32 crc, int needed, long end) throws IOException {
+		if(buffer.remaining() >= needed){
+			return;
+		}
+		buffer.compact();
+		int start = buffer.position();
+		buffer.limit((int) Math.min(buffer.capacity(), start + end - channel.position()));
+		while(buffer.position() < needed) {
+			if(!buffer.hasRemaining() || channel.read(buffer) < 0){
+				throw new EOFException("Save file ends early");
+			}
+		}
+		buffer.flip();
+		if(crc != null){
+			ByteBuffer added = buffer.duplicate();
+			added.position(start);
+			crc.update(added);
+		}
+	}
+}
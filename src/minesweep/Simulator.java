@@ -0,0 +1,190 @@
+package minesweep;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Command line simulator that plays headless games on every core and reports throughput, win rates and cascade
+ * statistics. Every game is generated from a seed derived from the master seed and the game's number, so a run
+ * gives the same results whatever the number of threads. No-guess boards are the first of a fixed number of
+ * candidates the solver wins rather than the first found in time, so they are the same on any machine.
+ * <p>
+ * Usage: {@code Simulator [--games N] [--difficulty beginner,intermediate,expert,RxCxM] [--seed S]
+ * [--threads T] [--strategy random|solver] [--no-guess]}
+ * @author Martin Wallace
+ */
+public class Simulator {
+
+	private static final int GAMES_PER_TASK = 1000; // games handed to a worker at a time
+
+	/**
+	 * Main Method to start up the simulator
+	 */
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		int games = 100000;
+		String difficulties = "beginner,intermediate,expert";
+		long seed = System.nanoTime();
+		int threads = Runtime.getRuntime().availableProcessors();
+		String strategy = "random";
+		boolean noGuess = false;
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+				case "--games": games = Integer.parseInt(args[++i]); break;
+				case "--difficulty": difficulties = args[++i]; break;
+				case "--seed": seed = Long.parseLong(args[++i]); break;
+				case "--threads": threads = Integer.parseInt(args[++i]); break;
+				case "--strategy": strategy = args[++i]; break;
+				case "--no-guess": noGuess = true; break;
+				default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		Supplier<MoveStrategy> strategies = strategy(strategy);
+		// games already run on every thread so each one looks for its no-guess board on its own
+		NoGuessGenerator generator = noGuess ? new NoGuessGenerator(1) : null;
+		System.out.printf("Master seed %d, %d games per board, %d threads, %s strategy%s%n", seed, games, threads,
+				strategy, noGuess ? ", no-guess boards" : "");
+		System.out.printf("%-14s %12s %10s %12s %12s %12s%s%n", "board", "games/s", "win rate", "cascades", "avg cells",
+				"max cells", noGuess ? String.format(" %14s", "attempts/board") : "");
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			String[] names = difficulties.split(",");
+			for(int i = 0; i < names.length; i++) {
+				int[] values = values(names[i].trim());
+				// each board size gets its own stream of game seeds
+				long boardSeed = mix(seed + i * 0x9E3779B97F4A7C15L);
+				Stats stats = run(pool, values, games, boardSeed, strategies, generator);
+				System.out.printf(Locale.ROOT, "%-14s %12.0f %9.2f%% %12.2f %12.1f %12d%s%n", names[i].trim(),
+						stats.games / (stats.nanos / 1e9), 100.0 * stats.wins / stats.games,
+						(double) stats.cascades / stats.games,
+						stats.cascades == 0 ? 0 : (double) stats.cascadeCells / stats.cascades, stats.maxCascade,
+						noGuess ? String.format(Locale.ROOT, " %14.1f", generator.getAttemptsPerBoard(values)) : "");
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return a factory for the named strategy
+	 */
+	static Supplier<MoveStrategy> strategy(String name) {
+		switch(name) {
+			case "random": return RandomStrategy::new;
+			case "solver": return SolverStrategy::new;
+			default: throw new IllegalArgumentException("Unknown strategy " + name);
+		}
+	}
+
+	/**
+	 * @return rows, cols and mines of one of the difficulties or of a custom board written as RxCxM
+	 */
+	static int[] values(String name) {
+		switch(name.toLowerCase(Locale.ROOT)) {
+			case "beginner": return MineSweeper.VALUES[MineSweeper.BEGINNER];
+			case "intermediate": return MineSweeper.VALUES[MineSweeper.INTERMEDIATE];
+			case "expert": return MineSweeper.VALUES[MineSweeper.EXPERT];
+			default:
+				String[] parts = name.split("x");
+				if(parts.length != 3){
+					throw new IllegalArgumentException("Unknown difficulty " + name);
+				}
+				return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+		}
+	}
+
+	/**
+	 * Plays the games for one board size split into tasks across the pool
+	 */
+	private static Stats run(ExecutorService pool, int[] values, int games, long seed, Supplier<MoveStrategy> strategies,
+							 NoGuessGenerator generator) throws InterruptedException, ExecutionException {
+		long start = System.nanoTime();
+		List<Future<Stats>> tasks = new ArrayList<>();
+		for(int first = 0; first < games; first += GAMES_PER_TASK) {
+			final int from = first, to = Math.min(first + GAMES_PER_TASK, games);
+			tasks.add(pool.submit(() -> {
+				Stats stats = new Stats();
+				for(int game = from; game < to; game++) {
+					play(values, mix(seed + game * 0x9E3779B97F4A7C15L), strategies.get(), generator, stats);
+				}
+				return stats;
+			}));
+		}
+		Stats total = new Stats();
+		for(Future<Stats> task : tasks) {
+			total.add(task.get());
+		}
+		total.nanos = System.nanoTime() - start;
+		return total;
+	}
+
+	/**
+	 * Plays a single game to the end
+	 * @param values - rows, cols and mines of the board
+	 * @param seed - the seed the whole game is generated from
+	 * @param strategy - picks the moves
+	 * @param generator - generates no-guess boards, or null to play any board
+	 * @param stats - receives the result of the game
+	 */
+	static void play(int[] values, long seed, MoveStrategy strategy, NoGuessGenerator generator, Stats stats) {
+		SplittableRandom random = new SplittableRandom(seed);
+		Board board = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+		int first = strategy.nextMove(board, random);
+		long boardSeed = random.nextLong();
+		if(generator != null){
+			boardSeed = generator.generate(values, first, boardSeed).orElse(boardSeed);
+		}
+		board.placeMines(values[MineSweeper.MINES], first, new SplittableRandom(boardSeed)::nextInt);
+		board.computeCounts();
+
+		int cell = first;
+		while(true) {
+			int[] changed = board.reveal(cell);
+			if(changed.length > 1){
+				stats.cascades++;
+				stats.cascadeCells += changed.length;
+				stats.maxCascade = Math.max(stats.maxCascade, changed.length);
+			}
+			if(board.isLost() || board.isWon()){
+				break;
+			}
+			strategy.cellsChanged(board, changed);
+			cell = strategy.nextMove(board, random);
+		}
+		stats.games++;
+		if(board.isWon()){
+			stats.wins++;
+		}
+	}
+
+	/**
+	 * Scrambles a seed so that seeds next to each other give unrelated games
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Totals of a batch of games
+	 */
+	static class Stats {
+		long games, wins, cascades, cascadeCells, maxCascade, nanos;
+
+		void add(Stats other) {
+			games += other.games;
+			wins += other.wins;
+			cascades += other.cascades;
+			cascadeCells += other.cascadeCells;
+			maxCascade = Math.max(maxCascade, other.maxCascade);
+		}
+	}
+}
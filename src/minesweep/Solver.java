@@ -0,0 +1,643 @@
+package minesweep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Deduces which covered cells are certainly safe and which are certainly mines from the numbers a player can see.
+ * <p>
+ * The solver keeps a frontier of revealed numbers that still touch unknown cells and updates it from the cells
+ * changed by each move, so nothing is rebuilt from the whole board. Deductions are tried from cheapest to most
+ * expensive: first each number on its own, then pairs of numbers where one's unknown cells are a subset of the
+ * other's, and finally an exact enumeration of every mine arrangement over each independent group of frontier
+ * cells. Flags placed by the player are ignored since they may be wrong.
+ * @author Martin Wallace
+ */
+public class Solver {
+
+	// What the solver knows about a cell
+	static final byte UNKNOWN = 0, SAFE = 1, MINE = 2;
+
+	private static final int MAX_COMPONENT = 64; // larger groups of frontier cells are not enumerated
+	private static final int MAX_NODES = 20000; // enumeration steps allowed per group before giving up on it
+
+	private final PlayerView view;
+	private final int rows, cols;
+	private final byte[] known; // deductions made so far, revealed cells stay UNKNOWN
+	private int knownMines;
+
+	private final int[] frontier; // revealed numbers that touch at least one unknown cell
+	private final int[] frontierPos; // position of each cell in frontier or -1
+	private int frontierSize;
+
+	private final int[] dirty; // frontier cells whose unknown neighbors changed since they were last checked
+	private final boolean[] isDirty;
+	private int dirtySize;
+
+	private final int[] safe; // cells deduced safe in the order they were found
+	private int safeHead, safeTail;
+
+	private final int[] stamp; // marks cells visited by the current component search
+	private int stampValue;
+	private final int[] neighbors = new int[8];
+
+	/**
+	 * @param view - the board the solver deduces from
+	 */
+	public Solver(PlayerView view) {
+		this.view = view;
+		this.rows = view.getRows();
+		this.cols = view.getCols();
+		int size = view.size();
+		this.known = new byte[size];
+		this.frontier = new int[size];
+		this.frontierPos = new int[size];
+		Arrays.fill(frontierPos, -1);
+		this.dirty = new int[size];
+		this.isDirty = new boolean[size];
+		this.safe = new int[size];
+		this.stamp = new int[size];
+	}
+
+	/**
+	 * Updates the frontier with the cells changed by a move. Must be called after every move
+	 * @param cells - the indexes of the changed cells
+	 */
+	public void cellsChanged(int[] cells) {
+		for(int cell : cells) {
+			if(view.getState(cell) != Board.REVEALED){
+				continue;
+			}
+			touch(cell);
+			int row = cell / cols, col = cell % cols;
+			for(int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+				for(int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+					touch(i * cols + j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a covered cell that is certainly safe, or -1 if none can be deduced
+	 */
+	public int nextSafe() {
+		while(true) {
+			while(safeHead < safeTail) {
+				int cell = safe[safeHead];
+				if(view.getState(cell) == Board.REVEALED){
+					safeHead++;
+				}else{
+					return cell;
+				}
+			}
+			if(!deduce()){
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the cell has been deduced to be a mine
+	 */
+	public boolean isKnownMine(int cell) {
+		return known[cell] == MINE;
+	}
+
+	/**
+	 * @return true if the cell has been deduced to be safe
+	 */
+	public boolean isKnownSafe(int cell) {
+		return known[cell] == SAFE;
+	}
+
+	/**
+	 * @return true if the cell is covered and nothing has been deduced about it
+	 */
+	public boolean isUnknown(int cell) {
+		return known[cell] == UNKNOWN && view.getState(cell) != Board.REVEALED;
+	}
+
+	/**
+	 * @return the number of cells in the frontier
+	 */
+	public int getFrontierSize() {
+		return frontierSize;
+	}
+
+	/**
+	 * @return the number of cells deduced to be mines
+	 */
+	int getKnownMines() {
+		return knownMines;
+	}
+
+	/**
+	 * Runs every rule until nothing more can be deduced
+	 */
+	void deduceAll() {
+		while(deduce()) {
+			// keep going
+		}
+	}
+
+	/**
+	 * Collects every independent group of unknown frontier cells
+	 * @param maxCells - the most cells a group may have, larger groups are left out
+	 * @param large - receives the cells of the groups left out, may be null
+	 * @return the groups
+	 */
+	List<Component> components(int maxCells, List<int[]> large) {
+		List<Component> components = new ArrayList<>();
+		stampValue++;
+		for(int f = 0; f < frontierSize; f++) {
+			int start = frontier[f];
+			if(stamp[start] == stampValue){
+				continue;
+			}
+			Component component = Component.collect(this, start, maxCells, large);
+			if(component != null){
+				components.add(component);
+			}
+		}
+		return components;
+	}
+
+	/**
+	 * Runs the rules from cheapest to most expensive until one of them deduces something
+	 * @return true if anything new was deduced
+	 */
+	private boolean deduce() {
+		int before = safeTail + knownMines;
+		propagate();
+		if(safeTail + knownMines != before){
+			return true;
+		}
+		if(subsets() || enumerate() || global()){
+			propagate();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds or removes a cell from the frontier depending on whether it is a revealed number touching unknown cells
+	 */
+	private void touch(int cell) {
+		boolean belongs = view.getState(cell) == Board.REVEALED && view.getCount(cell) > 0 && countUnknown(cell) > 0;
+		if(belongs && frontierPos[cell] < 0){
+			frontierPos[cell] = frontierSize;
+			frontier[frontierSize++] = cell;
+		}else if(!belongs && frontierPos[cell] >= 0){
+			int last = frontier[--frontierSize];
+			frontier[frontierPos[cell]] = last;
+			frontierPos[last] = frontierPos[cell];
+			frontierPos[cell] = -1;
+		}
+		if(belongs && !isDirty[cell]){
+			isDirty[cell] = true;
+			dirty[dirtySize++] = cell;
+		}
+	}
+
+	/**
+	 * Records a deduction and updates the numbers around the cell
+	 */
+	private void mark(int cell, byte value) {
+		if(known[cell] != UNKNOWN){
+			return;
+		}
+		known[cell] = value;
+		if(value == MINE){
+			knownMines++;
+		}else{
+			safe[safeTail++] = cell;
+		}
+		int row = cell / cols, col = cell % cols;
+		for(int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+			for(int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+				touch(i * cols + j);
+			}
+		}
+	}
+
+	/**
+	 * Fills the neighbors buffer with the unknown neighbors of the cell
+	 * @return the number of unknown neighbors
+	 */
+	private int unknownNeighbors(int cell, int[] out) {
+		int n = 0;
+		int row = cell / cols, col = cell % cols;
+		for(int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+			for(int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+				int neighbor = i * cols + j;
+				if(isUnknown(neighbor)){
+					out[n++] = neighbor;
+				}
+			}
+		}
+		return n;
+	}
+
+	private int countUnknown(int cell) {
+		return unknownNeighbors(cell, neighbors);
+	}
+
+	/**
+	 * @return the number of mines around the revealed cell that have not been deduced yet
+	 */
+	private int remaining(int cell) {
+		int mines = 0;
+		int row = cell / cols, col = cell % cols;
+		for(int i = Math.max(row - 1, 0); i <= Math.min(row + 1, rows - 1); i++) {
+			for(int j = Math.max(col - 1, 0); j <= Math.min(col + 1, cols - 1); j++) {
+				if(known[i * cols + j] == MINE){
+					mines++;
+				}
+			}
+		}
+		return view.getCount(cell) - mines;
+	}
+
+	/**
+	 * Single number rule. A number whose mines are all deduced makes its other unknown neighbors safe and a number
+	 * with as many unknown neighbors as missing mines makes them all mines
+	 */
+	private void propagate() {
+		int[] cells = new int[8];
+		while(dirtySize > 0) {
+			int cell = dirty[--dirtySize];
+			isDirty[cell] = false;
+			if(frontierPos[cell] < 0){
+				continue;
+			}
+			int unknown = unknownNeighbors(cell, cells);
+			int mines = remaining(cell);
+			if(mines == 0){
+				for(int i = 0; i < unknown; i++) {
+					mark(cells[i], SAFE);
+				}
+			}else if(mines == unknown){
+				for(int i = 0; i < unknown; i++) {
+					mark(cells[i], MINE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Subset rule. When the unknown cells of number A are all unknown cells of number B as well, the cells only B
+	 * touches hold exactly the difference of their missing mines
+	 * @return true if anything was deduced
+	 */
+	private boolean subsets() {
+		int[] a = new int[8], b = new int[8], difference = new int[8];
+		boolean found = false;
+		for(int f = 0; f < frontierSize; f++) {
+			int first = frontier[f];
+			int sizeA = unknownNeighbors(first, a);
+			int minesA = remaining(first);
+			int row = first / cols, col = first % cols;
+			// numbers sharing an unknown cell are at most two cells apart
+			for(int i = Math.max(row - 2, 0); i <= Math.min(row + 2, rows - 1); i++) {
+				for(int j = Math.max(col - 2, 0); j <= Math.min(col + 2, cols - 1); j++) {
+					int second = i * cols + j;
+					if(second == first || frontierPos[second] < 0){
+						continue;
+					}
+					int sizeB = unknownNeighbors(second, b);
+					if(sizeB <= sizeA){
+						continue;
+					}
+					int sizeD = subtract(b, sizeB, a, sizeA, difference);
+					if(sizeD != sizeB - sizeA){
+						continue; // A is not a subset of B
+					}
+					int minesD = remaining(second) - minesA;
+					if(minesD == 0 || minesD == sizeD){
+						for(int k = 0; k < sizeD; k++) {
+							mark(difference[k], minesD == 0 ? SAFE : MINE);
+						}
+						found = true;
+					}
+				}
+			}
+			if(found){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the cells of b that are not in a into out
+	 * @return the number of cells written
+	 */
+	private static int subtract(int[] b, int sizeB, int[] a, int sizeA, int[] out) {
+		int n = 0;
+		for(int i = 0; i < sizeB; i++) {
+			boolean shared = false;
+			for(int j = 0; j < sizeA && !shared; j++) {
+				shared = a[j] == b[i];
+			}
+			if(!shared){
+				out[n++] = b[i];
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Enumerates every arrangement of mines over each independent group of unknown frontier cells. Cells that are
+	 * a mine in every arrangement are mines and cells that are a mine in none are safe
+	 * @return true if anything was deduced
+	 */
+	private boolean enumerate() {
+		int left = view.getMineCount() - knownMines;
+		stampValue++;
+		boolean found = false;
+		for(int f = 0; f < frontierSize; f++) {
+			int start = frontier[f];
+			if(stamp[start] == stampValue){
+				continue;
+			}
+			Component component = Component.collect(this, start, MAX_COMPONENT, null);
+			if(component == null){
+				continue;
+			}
+			int[] result = component.solve(left);
+			if(result == null){
+				continue;
+			}
+			for(int i = 0; i < component.cells.length; i++) {
+				if(result[i] == SAFE || result[i] == MINE){
+					mark(component.cells[i], (byte) result[i]);
+					found = true;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Last resort using the total number of mines. If every mine is accounted for the rest of the cells are safe,
+	 * and if there are as many unknown cells as mines left they are all mines
+	 * @return true if anything was deduced
+	 */
+	private boolean global() {
+		int left = view.getMineCount() - knownMines;
+		int unknown = 0;
+		for(int cell = 0; cell < known.length; cell++) {
+			if(isUnknown(cell)){
+				unknown++;
+			}
+		}
+		if(unknown == 0 || (left != 0 && left != unknown)){
+			return false;
+		}
+		for(int cell = 0; cell < known.length; cell++) {
+			if(isUnknown(cell)){
+				mark(cell, left == 0 ? SAFE : MINE);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A group of unknown frontier cells linked to each other through the numbers they touch, along with those
+	 * numbers. Groups are independent of each other so each can be enumerated on its own
+	 */
+	static class Component {
+
+		final int[] cells; // the unknown cells of the group
+		final int[] numbers; // the revealed numbers touching them
+		final int[][] numberCells; // for each number the indexes into cells of its unknown neighbors
+		final int[] numberMines; // for each number the mines still missing around it
+
+		private Component(int[] cells, int[] numbers, int[][] numberCells, int[] numberMines) {
+			this.cells = cells;
+			this.numbers = numbers;
+			this.numberCells = numberCells;
+			this.numberMines = numberMines;
+		}
+
+		/**
+		 * Collects the group reachable from a frontier number, marking every number it visits
+		 * @param maxCells - the most cells the group may have
+		 * @param large - receives the cells of the group if it has too many, may be null
+		 * @return the group or null if it has too many cells to enumerate
+		 */
+		static Component collect(Solver solver, int start, int maxCells, List<int[]> large) {
+			int[] numbers = new int[16], cells = new int[16];
+			int numberCount = 0, cellCount = 0;
+			int[] around = new int[8];
+			int stampValue = solver.stampValue;
+			int[] stamp = solver.stamp;
+
+			stamp[start] = stampValue;
+			numbers[numberCount++] = start;
+			for(int next = 0; next < numberCount; next++) {
+				int size = solver.unknownNeighbors(numbers[next], around);
+				for(int k = 0; k < size; k++) {
+					int cell = around[k];
+					if(stamp[cell] == stampValue){
+						continue;
+					}
+					stamp[cell] = stampValue;
+					if(cellCount == cells.length){
+						cells = Arrays.copyOf(cells, cellCount * 2);
+					}
+					cells[cellCount++] = cell;
+					// every frontier number around the new cell belongs to the group as well
+					int row = cell / solver.cols, col = cell % solver.cols;
+					for(int i = Math.max(row - 1, 0); i <= Math.min(row + 1, solver.rows - 1); i++) {
+						for(int j = Math.max(col - 1, 0); j <= Math.min(col + 1, solver.cols - 1); j++) {
+							int number = i * solver.cols + j;
+							if(solver.frontierPos[number] >= 0 && stamp[number] != stampValue){
+								stamp[number] = stampValue;
+								if(numberCount == numbers.length){
+									numbers = Arrays.copyOf(numbers, numberCount * 2);
+								}
+								numbers[numberCount++] = number;
+							}
+						}
+					}
+				}
+			}
+			if(cellCount > maxCells){
+				if(large != null){
+					large.add(Arrays.copyOf(cells, cellCount));
+				}
+				return null;
+			}
+
+			cells = Arrays.copyOf(cells, cellCount);
+			numbers = Arrays.copyOf(numbers, numberCount);
+			int[][] numberCells = new int[numberCount][];
+			int[] numberMines = new int[numberCount];
+			for(int n = 0; n < numberCount; n++) {
+				int size = solver.unknownNeighbors(numbers[n], around);
+				numberCells[n] = new int[size];
+				for(int k = 0; k < size; k++) {
+					numberCells[n][k] = indexOf(cells, around[k]);
+				}
+				numberMines[n] = solver.remaining(numbers[n]);
+			}
+			return new Component(cells, numbers, numberCells, numberMines);
+		}
+
+		private static int indexOf(int[] cells, int cell) {
+			for(int i = 0; i < cells.length; i++) {
+				if(cells[i] == cell){
+					return i;
+				}
+			}
+			throw new IllegalStateException("Cell " + cell + " is not part of the group");
+		}
+
+		/**
+		 * Enumerates the arrangements of mines that satisfy every number of the group
+		 * @param maxMines - the most mines an arrangement may use
+		 * @return for each cell SAFE if it is a mine in no arrangement, MINE if it is a mine in all of them and
+		 * UNKNOWN otherwise, or null if the group took too long to enumerate
+		 */
+		int[] solve(int maxMines) {
+			Enumeration enumeration = new Enumeration(this, maxMines);
+			if(!enumeration.run()){
+				return null;
+			}
+			int[] result = new int[cells.length];
+			for(int i = 0; i < cells.length; i++) {
+				if(enumeration.solutions == 0){
+					result[i] = UNKNOWN;
+				}else if(enumeration.mineIn[i] == 0){
+					result[i] = SAFE;
+				}else if(enumeration.mineIn[i] == enumeration.solutions){
+					result[i] = MINE;
+				}else{
+					result[i] = UNKNOWN;
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Backtracking search over the cells of a group, assigning each one mine or safe in turn and pruning as soon
+	 * as a number can no longer be satisfied
+	 */
+	static class Enumeration {
+
+		final Component component;
+		final int maxMines;
+		final int[][] cellNumbers; // for each cell the numbers it touches
+		final int[] placed, open; // for each number the mines placed and the cells not assigned yet
+		final boolean[] assignment;
+		final long[] mineIn; // for each cell the number of solutions it is a mine in
+		long solutions;
+		int nodes;
+
+		Enumeration(Component component, int maxMines) {
+			this.component = component;
+			this.maxMines = maxMines;
+			int cellCount = component.cells.length, numberCount = component.numbers.length;
+			int[] touching = new int[cellCount];
+			for(int[] cells : component.numberCells) {
+				for(int cell : cells) {
+					touching[cell]++;
+				}
+			}
+			cellNumbers = new int[cellCount][];
+			for(int i = 0; i < cellCount; i++) {
+				cellNumbers[i] = new int[touching[i]];
+				touching[i] = 0;
+			}
+			open = new int[numberCount];
+			for(int n = 0; n < numberCount; n++) {
+				for(int cell : component.numberCells[n]) {
+					cellNumbers[cell][touching[cell]++] = n;
+				}
+				open[n] = component.numberCells[n].length;
+			}
+			placed = new int[numberCount];
+			assignment = new boolean[cellCount];
+			mineIn = new long[cellCount];
+		}
+
+		/**
+		 * @return false if the search was abandoned for taking too many steps
+		 */
+		boolean run() {
+			return search(0, 0);
+		}
+
+		private boolean search(int cell, int mines) {
+			if(++nodes > MAX_NODES){
+				return false;
+			}
+			if(cell == assignment.length){
+				solutionFound(mines);
+				return true;
+			}
+			for(int value = 0; value < 2; value++) {
+				boolean mine = value == 1;
+				if(mine && mines == maxMines){
+					continue;
+				}
+				if(assign(cell, mine)){
+					assignment[cell] = mine;
+					boolean finished = search(cell + 1, mine ? mines + 1 : mines);
+					unassign(cell, mine);
+					if(!finished){
+						return false;
+					}
+				}else{
+					unassign(cell, mine);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Updates the numbers around the cell for the given value
+		 * @return false if a number can no longer be satisfied
+		 */
+		private boolean assign(int cell, boolean mine) {
+			boolean valid = true;
+			for(int n : cellNumbers[cell]) {
+				open[n]--;
+				if(mine){
+					placed[n]++;
+				}
+				int missing = component.numberMines[n] - placed[n];
+				if(missing < 0 || missing > open[n]){
+					valid = false;
+				}
+			}
+			return valid;
+		}
+
+		private void unassign(int cell, boolean mine) {
+			for(int n : cellNumbers[cell]) {
+				open[n]++;
+				if(mine){
+					placed[n]--;
+				}
+			}
+		}
+
+		/**
+		 * Called for every arrangement that satisfies all of the numbers
+		 * @param mines - the number of mines in the arrangement
+		 */
+		void solutionFound(int mines) {
+			solutions++;
+			for(int i = 0; i < assignment.length; i++) {
+				if(assignment[i]){
+					mineIn[i]++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package minesweep;
+
+import java.util.SplittableRandom;
+
+/**
+ * Move strategy that opens in the middle of the board, reveals every cell the {@link Solver} can prove safe and
+ * only guesses a random unknown cell when nothing can be deduced.
+ * @author Martin Wallace
+ */
+public class SolverStrategy implements MoveStrategy {
+
+	private Solver solver;
+
+	@Override
+	public int nextMove(PlayerView view, SplittableRandom random) {
+		if(solver == null){
+			solver = new Solver(view);
+			return view.index(view.getRows() / 2, view.getCols() / 2);
+		}
+		int cell = solver.nextSafe();
+		if(cell >= 0){
+			return cell;
+		}
+		return guess(view, random);
+	}
+
+	@Override
+	public void cellsChanged(PlayerView view, int[] cells) {
+		solver.cellsChanged(cells);
+	}
+
+	/**
+	 * @return a random covered cell that is not known to be a mine
+	 */
+	private int guess(PlayerView view, SplittableRandom random) {
+		int unknown = 0;
+		for(int cell = 0; cell < view.size(); cell++) {
+			if(solver.isUnknown(cell)){
+				unknown++;
+			}
+		}
+		int pick = random.nextInt(unknown);
+		for(int cell = 0; cell < view.size(); cell++) {
+			if(solver.isUnknown(cell) && pick-- == 0){
+				return cell;
+			}
+		}
+		throw new IllegalStateException("No unknown cell left to guess");
+	}
+}
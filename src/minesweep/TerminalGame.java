@@ -0,0 +1,397 @@
+package minesweep;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays the game in a terminal with ANSI escape codes, for machines without a display or over SSH. Started with
+ * {@code MineSweeper --terminal [beginner|intermediate|expert|RxCxM]}, intermediate by default. It follows the same
+ * rules as the window, placing the mines around the first reveal, and records wins in the same high score file, but
+ * never loads an AWT or Swing class so it starts in a fraction of the time.
+ * <p>
+ * The screen is drawn once when a game starts and after that only the cells a move changed, the cells the cursor
+ * left and entered and the status line are written. Keys: the arrow keys, hjkl or wasd move the cursor, space or enter
+ * reveals a cell or chords a number, f flags, n starts a new game and q quits. When the terminal can not be switched
+ * to reading single keys, keys are read a line at a time, so {@code lll f} followed by enter moves right three times
+ * and flags.
+ * @author Martin Wallace
+ */
+class TerminalGame implements BoardListener {
+
+	private static final String CSI = "\033["; // starts every escape sequence
+	private static final int TOP = 3; // screen row of the first row of cells
+	private static final String[] COLORS = {"", "34", "32", "31", "35", "33", "36", "30;1", "37;1"}; // for each count
+
+	private final int[] values;
+	private final Long seed; // seed every board is generated from, random when null
+	private final HighScoreIO scores = new HighScoreIO();
+	private final GameLog gameLog; // every finished game is added to it, null to not log them
+	private final Writer out = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+	private final StringBuilder frame = new StringBuilder(); // escape codes written out at the end of each update
+	private final boolean raw; // true if keys arrive one at a time
+	private boolean restored;
+	private Board board;
+	private int cursor;
+	private boolean started, over;
+	private boolean recorded; // true once the win of the current game is in the high score file
+	private long startNanos; // when the first cell was revealed
+	private long millis; // time shown on the status line, in whole seconds while playing and exact once the game is over
+	private String message = ""; // shown under the board
+	private GameLog.Game played; // statistics of the current game for the game log
+
+	private TerminalGame(int[] values, Long seed, boolean raw, GameLog gameLog) {
+		this.values = values;
+		this.seed = seed;
+		this.raw = raw;
+		this.gameLog = gameLog;
+	}
+
+	/**
+	 * Plays games until the player quits
+	 * @param args - the difficulty, optional
+	 */
+	static void main(String[] args) throws IOException {
+		int[] values = Simulator.values(args.length > 0 ? args[0] : "intermediate");
+		boolean raw = System.console() != null && stty("-icanon", "-echo", "min", "1");
+		String games = System.getProperty("minesweep.games", "resources/games.log");
+		GameLog gameLog = "none".equals(games) ? null : new GameLog(Paths.get(games));
+		TerminalGame game = new TerminalGame(values, Long.getLong("minesweep.seed"), raw, gameLog);
+		Runtime.getRuntime().addShutdownHook(new Thread(game::restore, "terminal-restore"));
+		ScheduledExecutorService clock = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "terminal-clock");
+			thread.setDaemon(true);
+			return thread;
+		});
+		clock.scheduleAtFixedRate(game::tick, 100, 100, TimeUnit.MILLISECONDS);
+		try {
+			game.play(System.in);
+		} finally {
+			clock.shutdownNow();
+			game.restore();
+			game.logGame(Replay.ABANDONED);
+			if(gameLog != null){
+				gameLog.close();
+			}
+		}
+	}
+
+	/**
+	 * Runs {@code stty} on the controlling terminal
+	 * @return true if it succeeded
+	 */
+	private static boolean stty(String... settings) {
+		String[] command = new String[settings.length + 1];
+		command[0] = "stty";
+		System.arraycopy(settings, 0, command, 1, settings.length);
+		try {
+			Process process = new ProcessBuilder(command).redirectInput(new File("/dev/tty")).start();
+			return process.waitFor() == 0;
+		} catch(IOException e) {
+			return false;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Puts the terminal back the way it was found
+	 */
+	private synchronized void restore() {
+		if(restored){
+			return;
+		}
+		restored = true;
+		frame.append(CSI).append(TOP + values[MineSweeper.ROW] + 4).append(";1H").append(CSI).append("?25h");
+		flush();
+		if(raw){
+			stty("icanon", "echo");
+		}
+	}
+
+	/**
+	 * Reads keys and plays them until q is pressed or the input ends
+	 */
+	private void play(InputStream in) throws IOException {
+		newGame();
+		int key;
+		while((key = in.read()) >= 0) {
+			if(key == 27){ // an arrow key is ESC [ followed by A, B, C or D
+				if(in.read() != '['){
+					continue;
+				}
+				switch(in.read()) {
+					case 'A': key = 'k'; break;
+					case 'B': key = 'j'; break;
+					case 'C': key = 'l'; break;
+					case 'D': key = 'h'; break;
+					default: continue;
+				}
+			}
+			if(key == 'q' || key == 'Q'){
+				return;
+			}
+			key(key, in);
+		}
+	}
+
+	private synchronized void key(int key, InputStream in) throws IOException {
+		int rows = board.getRows(), cols = board.getCols();
+		int row = board.row(cursor), col = board.col(cursor);
+		switch(key) {
+			case 'h': case 'a': moveCursor(row, Math.max(col - 1, 0)); break;
+			case 'l': case 'd': moveCursor(row, Math.min(col + 1, cols - 1)); break;
+			case 'k': case 'w': moveCursor(Math.max(row - 1, 0), col); break;
+			case 'j': case 's': moveCursor(Math.min(row + 1, rows - 1), col); break;
+			case 'f': case 'F':
+				if(started && !over && board.toggleFlag(cursor)){
+					played.flagToggled(board, cursor);
+				}
+				break;
+			case 'n': case 'N': newGame(); return;
+			case '\n': case '\r':
+				if(!raw){
+					return; // ends a line of keys
+				}
+				open();
+				break;
+			case ' ': open(); break;
+			default: return;
+		}
+		if(over && board.isWon() && !recorded){
+			recorded = true;
+			askName(in);
+		}
+		flush();
+	}
+
+	/**
+	 * Starts a game on a new board and draws the whole screen
+	 */
+	private void newGame() {
+		logGame(Replay.ABANDONED);
+		board = new Board(values[MineSweeper.ROW], values[MineSweeper.COL]);
+		board.setListener(this);
+		cursor = board.index(board.getRows() / 2, board.getCols() / 2);
+		started = false;
+		over = false;
+		recorded = false;
+		millis = 0;
+		message = "";
+		frame.append(CSI).append("?25l").append(CSI).append("2J").append(CSI).append("H");
+		frame.append("MineSweeper ").append(NoGuessGenerator.key(values));
+		for(int row = 0; row < board.getRows(); row++) {
+			frame.append(CSI).append(TOP + row).append(";1H");
+			for(int col = 0; col < board.getCols(); col++) {
+				appendCell(board.index(row, col));
+			}
+		}
+		frame.append(CSI).append(TOP + board.getRows() + 1).append(";1H")
+				.append("arrows/hjkl/wasd move  space/enter open  f flag  n new game  q quit");
+		drawStatus();
+		flush();
+		if(MineSweeper.STATS){
+			System.err.println("Ready: first frame drawn");
+		}
+	}
+
+	/**
+	 * Reveals or chords the cell under the cursor, placing the mines around it on the first reveal
+	 */
+	private void open() {
+		if(over){
+			return;
+		}
+		if(!started){
+			long boardSeed = seed != null ? seed : ThreadLocalRandom.current().nextLong();
+			board.placeMines(values[MineSweeper.MINES], cursor, new SplittableRandom(boardSeed)::nextInt);
+			board.computeCounts();
+			started = true;
+			startNanos = System.nanoTime();
+			played = new GameLog.Game(values, boardSeed);
+		}
+		played.clicks++;
+		board.open(cursor);
+	}
+
+	/**
+	 * Asks for a name if the win made the high score list and records it
+	 */
+	private void askName(InputStream in) throws IOException {
+		String name = "";
+		int time = (int) millis;
+		if(scores.isHighScore(values, time)){
+			frame.append(CSI).append(TOP + board.getRows() + 3).append(";1H").append(CSI).append("J")
+					.append("You got a high score! Enter your name: ").append(CSI).append("?25h");
+			flush();
+			int c;
+			if(raw){
+				stty("icanon", "echo");
+			}else{
+				// the rest of the line of keys holding the winning move is not the name
+				while((c = in.read()) >= 0 && c != '\n') {
+					// skip
+				}
+			}
+			StringBuilder line = new StringBuilder();
+			while((c = in.read()) >= 0 && c != '\n') {
+				line.append((char) c);
+			}
+			if(raw){
+				stty("-icanon", "-echo", "min", "1");
+			}
+			name = line.toString().trim();
+			frame.append(CSI).append("?25l");
+		}
+		scores.addScore(values, time, name);
+		message = "Congratulations!! " + scores.getRankInfo(values, time) + "\n" + scores.getInfo(values);
+		drawStatus();
+	}
+
+	@Override
+	public synchronized void cellsChanged(int[] cells) {
+		if(played != null){
+			played.cellsChanged(cells);
+		}
+		for(int cell : cells) {
+			drawCell(cell);
+		}
+		drawStatus();
+	}
+
+	@Override
+	public synchronized void flagsChanged(int flagCount) {
+		drawStatus();
+	}
+
+	@Override
+	public synchronized void gameLost(int cell) {
+		millis = elapsed();
+		over = true;
+		logGame(Replay.LOST);
+		for(int c = 0; c < board.size(); c++) {
+			if(board.isMine(c) || board.getState(c) == Board.FLAGGED){
+				drawCell(c);
+			}
+		}
+		message = "Boom! Press n for a new game";
+		drawStatus();
+	}
+
+	@Override
+	public synchronized void gameWon() {
+		millis = elapsed();
+		over = true;
+		logGame(Replay.WON);
+		drawStatus();
+	}
+
+	/**
+	 * Adds the current game to the game log, which writes it on its own thread, if one has been started and not logged
+	 * @param result - how the game ended, one of the results in {@link Replay}
+	 */
+	private synchronized void logGame(int result) {
+		if(played == null){
+			return;
+		}
+		if(gameLog != null){
+			gameLog.add(played.finish(result, over ? millis : elapsed(), board.getRevealedCount()));
+		}
+		played = null;
+	}
+
+	/**
+	 * Updates the clock on the status line each time it passes a whole second while a game is being played
+	 */
+	private synchronized void tick() {
+		long now = elapsed();
+		if(started && !over && now / 1000 != millis / 1000){
+			millis = now;
+			drawStatus();
+			flush();
+		}
+	}
+
+	/**
+	 * @return milliseconds since the first reveal
+	 */
+	private long elapsed() {
+		return (System.nanoTime() - startNanos) / 1_000_000;
+	}
+
+	private void moveCursor(int row, int col) {
+		int old = cursor;
+		cursor = board.index(row, col);
+		drawCell(old);
+		drawCell(cursor);
+	}
+
+	/**
+	 * Adds the escape codes that move to a cell and draw it
+	 */
+	private void drawCell(int cell) {
+		frame.append(CSI).append(TOP + board.row(cell)).append(';').append(1 + 2 * board.col(cell)).append('H');
+		appendCell(cell);
+	}
+
+	/**
+	 * Adds the escape codes that draw one cell where the terminal's cursor is, in reverse video under the cursor
+	 */
+	private void appendCell(int cell) {
+		frame.append(CSI).append(cell == cursor ? "7" : "0").append('m').append(' ');
+		int state = board.getState(cell);
+		boolean mine = over && board.isMine(cell);
+		if(state == Board.REVEALED){
+			int count = board.getCount(cell);
+			if(count == 0){
+				frame.append('.');
+			}else{
+				frame.append(CSI).append(COLORS[count]).append('m').append(count);
+			}
+		}else if(state == Board.EXPLODED){
+			frame.append(CSI).append("41;1m*");
+		}else if(state == Board.FLAGGED){
+			frame.append(CSI).append(over && !mine ? "33m" : "31;1m").append(over && !mine ? 'x' : 'F');
+		}else{
+			frame.append(mine ? '*' : '#');
+		}
+		frame.append(CSI).append("0m");
+	}
+
+	/**
+	 * Adds the escape codes that draw the status line and the message under the board
+	 */
+	private void drawStatus() {
+		String status = over ? board.isWon() ? "WON" : "LOST" : started ? "PLAYING" : "READY";
+		frame.append(CSI).append("1;30H").append(CSI).append('K').append(String.format("Bombs left: %d  Time: %s  %s",
+				Math.max(values[MineSweeper.MINES] - board.getFlagCount(), 0),
+				over ? Leaderboard.seconds(millis) : String.valueOf(millis / 1000), status));
+		frame.append(CSI).append(TOP + board.getRows() + 3).append(";1H").append(CSI).append('J')
+				.append(message.replace("\n", "\r\n"));
+	}
+
+	/**
+	 * Writes out everything drawn since the last flush in one go
+	 */
+	private synchronized void flush() {
+		try {
+			out.append(frame);
+			out.flush();
+		} catch(IOException e) {
+			// the terminal went away, there is nothing left to draw on
+		}
+		frame.setLength(0);
+	}
+}
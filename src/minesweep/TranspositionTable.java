@@ -0,0 +1,89 @@
+package minesweep;
+
+/**
+ * Fixed size cache of analysis results keyed by the {@link Board#getHash() hash} of the position they were worked
+ * out for, so a search reaching the same position by another order of moves looks its result up instead of
+ * analyzing it again. Each hash has a single slot and a new entry replaces whatever was there, so memory stays at the
+ * capacity given however long the search runs, at the cost of sometimes analyzing a position twice.
+ * <p>
+ * Two positions with the same 64 bit hash are taken to be the same position. With a few million positions in a search
+ * the chance of that ever going wrong is around one in a million.
+ * @param <V> the type of the results
+ * @author Martin Wallace
+ */
+public class TranspositionTable<V> {
+
+	private final long[] keys;
+	private final Object[] values; // null for an empty slot
+	private final int mask;
+	private long hits, misses, replaced;
+
+	/**
+	 * @param capacity - the most entries kept, rounded up to a power of two
+	 */
+	public TranspositionTable(int capacity) {
+		if(capacity <= 0 || capacity > 1 << 30){
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+		int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.keys = new long[size];
+		this.values = new Object[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * @return the result stored for the position, or null if it is not in the table
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long hash) {
+		int slot = slot(hash);
+		if(values[slot] != null && keys[slot] == hash){
+			hits++;
+			return (V) values[slot];
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Stores the result for a position, replacing the entry of any other position sharing its slot
+	 */
+	public void put(long hash, V value) {
+		if(value == null){
+			throw new NullPointerException("Can not store a null result");
+		}
+		int slot = slot(hash);
+		if(values[slot] != null && keys[slot] != hash){
+			replaced++;
+		}
+		keys[slot] = hash;
+		values[slot] = value;
+	}
+
+	private int slot(long hash) {
+		// Zobrist hashes are uniformly random, so the low bits are as good as any
+		return (int) hash & mask;
+	}
+
+	/**
+	 * @return the number of slots
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries thrown away to make room for another position
+	 */
+	public long getReplaced() {
+		return replaced;
+	}
+}